@@ -2,6 +2,7 @@ plugins {
     java
     id("org.springframework.boot") version "3.2.1"
     id("io.spring.dependency-management") version "1.1.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.ureca"
@@ -19,6 +20,7 @@ dependencies {
     // Spring Boot - using WebFlux for reactive support
     implementation("org.springframework.boot:spring-boot-starter-webflux")
     implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("io.micrometer:micrometer-registry-prometheus")
     
     // Cosmos DB Java SDK v4
     implementation("com.azure:azure-cosmos:4.53.1")
@@ -26,6 +28,13 @@ dependencies {
     // Azure Identity for DefaultAzureCredential
     implementation("com.azure:azure-identity:1.11.1")
     
+    // Native epoll transport for the HTTP server event loops; required for the Unix domain socket listener
+    runtimeOnly(group = "io.netty", name = "netty-transport-native-epoll", classifier = "linux-x86_64")
+    runtimeOnly(group = "io.netty", name = "netty-transport-native-epoll", classifier = "linux-aarch_64")
+
+    // Caffeine for the bounded query result cache
+    implementation("com.github.ben-manes.caffeine:caffeine")
+
     // JSON processing
     implementation("com.fasterxml.jackson.core:jackson-databind")
     
@@ -33,13 +42,28 @@ dependencies {
     compileOnly("org.projectlombok:lombok")
     annotationProcessor("org.projectlombok:lombok")
     
-    // SpringDoc OpenAPI (Swagger UI) - for development
-    implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.3.0")
+    // SpringDoc OpenAPI (Swagger UI) - WebFlux variant, so no servlet/MVC stack on the classpath
+    implementation("org.springdoc:springdoc-openapi-starter-webflux-ui:2.3.0")
     
     // Testing
     testImplementation("org.springframework.boot:spring-boot-starter-test")
+    testImplementation("io.projectreactor:reactor-test")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+// JMH benchmarks for the request/response hot path: ./gradlew jmh [-PjmhIncludes=<regex>]
+jmh {
+    jmhVersion.set("1.37")
+    includes.set(listOf(project.findProperty("jmhIncludes") as String? ?: ".*"))
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // ops/s plus gc.alloc.rate.norm (bytes allocated per op)
+    benchmarkMode.set(listOf("thrpt"))
+    timeUnit.set("s")
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+}
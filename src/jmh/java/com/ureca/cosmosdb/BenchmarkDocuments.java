@@ -0,0 +1,46 @@
+package com.ureca.cosmosdb;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic documents shaped like what the SDK materializes for {@code Object.class} queries.
+ */
+public final class BenchmarkDocuments {
+
+    private BenchmarkDocuments() {
+    }
+
+    public static List<Object> documents(int count) {
+        List<Object> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(document(i));
+        }
+        return documents;
+    }
+
+    public static Map<String, Object> document(int i) {
+        Map<String, Object> address = new LinkedHashMap<>();
+        address.put("street", i + " Main Street");
+        address.put("city", "Seoul");
+        address.put("zip", String.format("%05d", i));
+
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("id", "item-" + i);
+        document.put("userId", "u-" + (i % 100));
+        document.put("name", "User " + i);
+        document.put("email", "user" + i + "@example.com");
+        document.put("status", i % 3 == 0 ? "inactive" : "active");
+        document.put("score", i * 1.5);
+        document.put("tags", List.of("alpha", "beta", "gamma"));
+        document.put("address", address);
+        document.put("_rid", "AAAAAA==" + i);
+        document.put("_self", "dbs/AAAA==/colls/AAAA=/docs/AAAAAA==" + i + "/");
+        document.put("_etag", "\"0000d200-0000-0000-0000-65a1b2c30000\"");
+        document.put("_attachments", "attachments/");
+        document.put("_ts", 1_700_000_000L + i);
+        return document;
+    }
+}
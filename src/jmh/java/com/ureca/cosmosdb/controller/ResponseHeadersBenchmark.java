@@ -0,0 +1,62 @@
+package com.ureca.cosmosdb.controller;
+
+import com.ureca.cosmosdb.model.CosmosMetadata;
+import com.ureca.cosmosdb.model.ErrorInfo;
+import com.ureca.cosmosdb.model.QueryData;
+import com.ureca.cosmosdb.model.QueryResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * Cost of turning a {@link QueryResponse} into a {@link ResponseEntity} with the X-Cosmos-* headers.
+ */
+@State(Scope.Benchmark)
+public class ResponseHeadersBenchmark {
+
+    private CosmosQueryController controller;
+    private QueryResponse success;
+    private QueryResponse throttled;
+
+    @Setup
+    public void setUp() {
+        controller = new CosmosQueryController(null, null);
+
+        success = QueryResponse.builder()
+                .ok(true)
+                .data(QueryData.builder().count(0).results(List.of()).build())
+                .cosmos(CosmosMetadata.builder()
+                        .ru(2.83)
+                        .statusCode(200)
+                        .activityId("5d9b1a3e-1f0c-4c8e-9b7a-2f4e6d8c0a1b")
+                        .subStatus(0)
+                        .build())
+                .build();
+
+        throttled = QueryResponse.builder()
+                .ok(false)
+                .error(ErrorInfo.builder().code("Throttled").message("Request rate is large").build())
+                .cosmos(CosmosMetadata.builder()
+                        .ru(0.0)
+                        .statusCode(429)
+                        .activityId("5d9b1a3e-1f0c-4c8e-9b7a-2f4e6d8c0a1b")
+                        .subStatus(3200)
+                        .retryAfterMs(5000)
+                        .build())
+                .build();
+    }
+
+    @Benchmark
+    public ResponseEntity<QueryResponse> success() {
+        return controller.toResponseEntity(success, "req-123");
+    }
+
+    @Benchmark
+    public ResponseEntity<QueryResponse> throttled() {
+        return controller.toResponseEntity(throttled, "req-123");
+    }
+}
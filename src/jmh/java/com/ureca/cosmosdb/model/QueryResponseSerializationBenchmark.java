@@ -0,0 +1,59 @@
+package com.ureca.cosmosdb.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ureca.cosmosdb.BenchmarkDocuments;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+
+/**
+ * Jackson serialization cost of the response envelope, using the same mapper defaults as WebFlux.
+ */
+@State(Scope.Benchmark)
+public class QueryResponseSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+
+    /**
+     * MAP: default mode ({@code Object.class} items), JSON_NODE: passthrough mode.
+     */
+    @Param({"MAP", "JSON_NODE"})
+    public String itemType;
+
+    private ObjectMapper objectMapper;
+    private QueryResponse response;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<?> results = "JSON_NODE".equals(itemType)
+                ? BenchmarkDocuments.documents(pageSize).stream().map(objectMapper::valueToTree).toList()
+                : BenchmarkDocuments.documents(pageSize);
+        response = QueryResponse.builder()
+                .ok(true)
+                .data(QueryData.builder()
+                        .count(results.size())
+                        .results(results)
+                        .continuationToken("{\"token\":\"-RID:~AAAAAA==#RT:1\",\"range\":{}}")
+                        .build())
+                .cosmos(CosmosMetadata.builder()
+                        .ru(12.34)
+                        .statusCode(200)
+                        .activityId("5d9b1a3e-1f0c-4c8e-9b7a-2f4e6d8c0a1b")
+                        .subStatus(0)
+                        .build())
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,67 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.ureca.cosmosdb.BenchmarkDocuments;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.QueryRequest;
+import com.ureca.cosmosdb.model.QueryResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-request CPU and allocation cost of the service-side request/response mapping.
+ */
+@State(Scope.Benchmark)
+public class QueryServiceBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+
+    private CosmosQueryService service;
+    private QueryShapeCache queryShapes;
+    private QueryRequest request;
+    private QueryPage<Object> page;
+
+    @Setup
+    public void setUp() {
+        CosmosDbProperties properties = new CosmosDbProperties();
+        queryShapes = new QueryShapeCache(properties);
+        service = new CosmosQueryService(null, properties, null, null, queryShapes, null, null, null, null, null);
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("userId", "u-001");
+        params.put("@status", "active");
+        params.put("minScore", 10);
+        request = new QueryRequest(
+                "SELECT * FROM c WHERE c.userId = @userId AND c.status = @status AND c.score > @minScore", params);
+
+        page = QueryPage.builder()
+                .results(BenchmarkDocuments.documents(pageSize))
+                .requestCharge(12.34)
+                .activityId("5d9b1a3e-1f0c-4c8e-9b7a-2f4e6d8c0a1b")
+                .continuationToken("{\"token\":\"-RID:~AAAAAA==#RT:1#TRC:" + pageSize + "\",\"range\":{}}")
+                .build();
+    }
+
+    @Benchmark
+    public SqlQuerySpec buildQuerySpec() {
+        // Includes the shape lookup, as on the request path
+        return service.buildQuerySpec(request, queryShapes.get(request.getSql()));
+    }
+
+    @Benchmark
+    public String detectPointRead() {
+        return service.detectPointRead(request, queryShapes.get(request.getSql()), "u-001");
+    }
+
+    @Benchmark
+    public QueryResponse buildSuccessResponse() {
+        return service.buildSuccessResponse(page);
+    }
+}
@@ -0,0 +1,90 @@
+package com.ureca.cosmosdb.config;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Cosmos DB clients by account name. The default account is served by the {@link CosmosAsyncClient} bean.
+ * Clients for {@code cosmos.routing.accounts} are created on first use and then shared by every request
+ * to that account, whatever the database.
+ */
+@Slf4j
+public class CosmosClientRegistry {
+
+    private final CosmosAsyncClient defaultClient;
+    private final CosmosDbProperties properties;
+    private final BiFunction<String, CosmosDbProperties.Account, CosmosAsyncClient> clientFactory;
+    private final Map<String, CosmosAsyncClient> clients = new ConcurrentHashMap<>();
+
+    public CosmosClientRegistry(CosmosAsyncClient defaultClient, CosmosDbProperties properties,
+                                BiFunction<String, CosmosDbProperties.Account, CosmosAsyncClient> clientFactory) {
+        this.defaultClient = defaultClient;
+        this.properties = properties;
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * The client of {@code account} (null = the default account). Fails with an
+     * {@link IllegalArgumentException} if the account is not configured.
+     */
+    public Mono<CosmosAsyncClient> client(String account) {
+        if (account == null) {
+            return Mono.just(defaultClient);
+        }
+        CosmosAsyncClient client = clients.get(account);
+        if (client != null) {
+            return Mono.just(client);
+        }
+        CosmosDbProperties.Account settings = properties.getRouting().getAccounts().get(account);
+        if (settings == null) {
+            return Mono.error(new IllegalArgumentException("Unknown Cosmos DB account: " + account));
+        }
+        // Building a client blocks while it reads the account metadata; keep that off the event loops
+        return Mono.fromCallable(() -> clients.computeIfAbsent(account, name -> clientFactory.apply(name, settings)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * The database to use: {@code database} if given, otherwise the default database of {@code account}.
+     */
+    public String database(String account, String database) {
+        if (database != null) {
+            return database;
+        }
+        if (account == null) {
+            return properties.getDefaultConfig().getDatabase();
+        }
+        CosmosDbProperties.Account settings = properties.getRouting().getAccounts().get(account);
+        if (settings == null || settings.getDatabase() == null) {
+            throw new IllegalArgumentException("No database given and account " + account + " has no default database");
+        }
+        return settings.getDatabase();
+    }
+
+    /**
+     * The cap on concurrent upstream calls to a database of {@code account}, or null for no cap.
+     */
+    public Integer maxInFlight(String account) {
+        CosmosDbProperties.Account settings = account != null ? properties.getRouting().getAccounts().get(account) : null;
+        if (settings != null && settings.getMaxInFlight() != null) {
+            return settings.getMaxInFlight();
+        }
+        return properties.getRouting().getMaxInFlightPerTarget();
+    }
+
+    @PreDestroy
+    public void close() {
+        clients.forEach((name, client) -> {
+            log.info("Closing Cosmos DB client for account {}", name);
+            client.close();
+        });
+        clients.clear();
+    }
+}
@@ -1,17 +1,30 @@
 package com.ureca.cosmosdb.config;
 
 import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosAsyncDatabase;
 import com.azure.cosmos.CosmosClientBuilder;
+import com.azure.cosmos.CosmosContainerProactiveInitConfig;
+import com.azure.cosmos.CosmosContainerProactiveInitConfigBuilder;
 import com.azure.cosmos.DirectConnectionConfig;
 import com.azure.cosmos.GatewayConnectionConfig;
+import com.azure.cosmos.ThrottlingRetryOptions;
 import com.azure.identity.DefaultAzureCredential;
+import com.azure.cosmos.models.CosmosContainerIdentity;
 import com.azure.identity.DefaultAzureCredentialBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @RequiredArgsConstructor
@@ -19,44 +32,212 @@ import java.time.Duration;
 public class CosmosDbConfig {
 
     private final CosmosDbProperties properties;
+    private DefaultAzureCredential defaultAzureCredential;
 
     @Bean
-    public CosmosAsyncClient cosmosAsyncClient() {
+    @ConditionalOnProperty(prefix = "cosmos", name = "backend", havingValue = "COSMOS", matchIfMissing = true)
+    public CosmosAsyncClient cosmosAsyncClient(MeterRegistry meterRegistry) {
         log.info("Initializing Cosmos DB async client with endpoint: {}", properties.getEndpoint());
         log.info("Authentication mode: {}", properties.getAuth().getMode());
         log.info("Connection mode: {}", properties.getConnection().getMode());
         
+        CosmosClientBuilder builder = clientBuilder("cosmos", properties.getEndpoint(), properties.getAuth().getMode(),
+                properties.getKey(), properties.getConnection().getMaxConnections());
+        CosmosDbProperties.Connection connection = properties.getConnection();
+        boolean directMode = "DIRECT".equalsIgnoreCase(connection.getMode());
+
+        // The availability strategy is set per request, with the request's deadline (SdkCosmosQueryBackend)
+        CosmosDbProperties.Hedging hedging = properties.getHedging();
+        if (hedging.isEnabled()) {
+            log.info("Hedged reads enabled: threshold {} ms, step {} ms, budget {} of calls, regions {}",
+                    hedging.getThreshold().toMillis(), hedging.getThresholdStep().toMillis(),
+                    hedging.getBudgetRatio(), connection.getPreferredRegions());
+        }
+
+        // Warm-up runs inside buildAsyncClient, so the context (and readiness) waits for it
+        CosmosDbProperties.Warmup warmup = properties.getWarmup();
+        boolean warmingUp = warmup.isEnabled() && !warmup.getContainers().isEmpty();
+        boolean proactiveInit = warmingUp && directMode && !connection.getPreferredRegions().isEmpty();
+        if (proactiveInit) {
+            builder.openConnectionsAndInitCaches(proactiveInitConfig(warmup, connection.getPreferredRegions().size()));
+        }
+        if (warmingUp) {
+            log.info("Warming up containers {} in database {}", warmup.getContainers(),
+                    properties.getDefaultConfig().getDatabase());
+        }
+
+        long start = System.nanoTime();
+        CosmosAsyncClient client = builder.buildAsyncClient();
+        if (warmingUp) {
+            if (!proactiveInit) {
+                warmUpByReading(client, warmup);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            Timer.builder("sidecar.warmup.duration")
+                    .description("Time spent opening connections and loading caches at startup")
+                    .register(meterRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+            log.info("Warm-up completed in {} ms", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+        return client;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cosmos", name = "backend", havingValue = "COSMOS", matchIfMissing = true)
+    public CosmosClientRegistry cosmosClientRegistry(CosmosAsyncClient cosmosAsyncClient) {
+        if (!properties.getRouting().getAccounts().isEmpty()) {
+            log.info("Routable Cosmos DB accounts: {}", properties.getRouting().getAccounts().keySet());
+        }
+        return new CosmosClientRegistry(cosmosAsyncClient, properties, this::buildAccountClient);
+    }
+
+    /**
+     * Client of a named account: the connection settings of the default client, without warm-up.
+     */
+    private CosmosAsyncClient buildAccountClient(String name, CosmosDbProperties.Account account) {
+        log.info("Initializing Cosmos DB async client for account {} with endpoint: {}", name, account.getEndpoint());
+        int maxConnections = account.getMaxConnections() != null
+                ? account.getMaxConnections()
+                : properties.getConnection().getMaxConnections();
+        return clientBuilder("cosmos.routing.accounts." + name, account.getEndpoint(), account.getAuthMode(),
+                account.getKey(), maxConnections)
+                .buildAsyncClient();
+    }
+
+    /**
+     * Builder with authentication and the cosmos.connection settings applied. {@code prefix} names the
+     * configuration the endpoint and key came from, for error messages.
+     */
+    private CosmosClientBuilder clientBuilder(String prefix, String endpoint, String authMode, String key,
+                                              int maxConnections) {
         CosmosClientBuilder builder = new CosmosClientBuilder()
-                .endpoint(properties.getEndpoint());
+                .endpoint(endpoint);
 
         // Configure authentication based on mode
-        String authMode = properties.getAuth().getMode();
         if ("DEFAULT_AZURE_CREDENTIAL".equalsIgnoreCase(authMode)) {
-            // DefaultAzureCredential is created once since this bean is a singleton
-            DefaultAzureCredential credential = new DefaultAzureCredentialBuilder().build();
-            builder.credential(credential);
+            builder.credential(defaultAzureCredential());
             log.info("Cosmos DB async client configured with DefaultAzureCredential");
         } else if ("KEY".equalsIgnoreCase(authMode)) {
-            if (properties.getKey() == null || properties.getKey().isEmpty()) {
-                throw new IllegalArgumentException("cosmos.key must be set when auth.mode is KEY");
+            if (key == null || key.isEmpty()) {
+                throw new IllegalArgumentException(prefix + ".key must be set when the auth mode is KEY");
             }
-            builder.key(properties.getKey());
+            builder.key(key);
             log.info("Cosmos DB async client configured with Key-based authentication");
         } else {
-            throw new IllegalArgumentException("Invalid auth.mode: " + authMode + ". Valid values are: KEY, DEFAULT_AZURE_CREDENTIAL");
+            throw new IllegalArgumentException("Invalid auth mode for " + prefix + ": " + authMode
+                    + ". Valid values are: KEY, DEFAULT_AZURE_CREDENTIAL");
         }
 
         // Configure Direct mode or Gateway mode
-        if ("DIRECT".equalsIgnoreCase(properties.getConnection().getMode())) {
-            DirectConnectionConfig directConfig = DirectConnectionConfig.getDefaultConfig();
-            builder.directMode(directConfig);
-            log.info("Cosmos DB async client configured with Direct mode");
+        CosmosDbProperties.Connection connection = properties.getConnection();
+        if ("DIRECT".equalsIgnoreCase(connection.getMode())) {
+            builder.directMode(directConnectionConfig(connection, maxConnections));
+            log.info("Cosmos DB async client configured with Direct mode (max connections per endpoint: {})",
+                    maxConnections);
         } else {
-            GatewayConnectionConfig gatewayConfig = GatewayConnectionConfig.getDefaultConfig();
-            builder.gatewayMode(gatewayConfig);
-            log.info("Cosmos DB async client configured with Gateway mode");
+            builder.gatewayMode(gatewayConnectionConfig(connection, maxConnections));
+            log.info("Cosmos DB async client configured with Gateway mode (max connection pool size: {})",
+                    maxConnections);
+        }
+
+        if (!connection.getPreferredRegions().isEmpty()) {
+            builder.preferredRegions(connection.getPreferredRegions());
+            log.info("Preferred regions: {}", connection.getPreferredRegions());
+        }
+        builder.contentResponseOnWriteEnabled(connection.isContentResponseOnWrite());
+        builder.throttlingRetryOptions(throttlingRetryOptions(connection));
+        return builder;
+    }
+
+    /**
+     * DefaultAzureCredential caches tokens, so one instance is shared by every client.
+     */
+    private synchronized DefaultAzureCredential defaultAzureCredential() {
+        if (defaultAzureCredential == null) {
+            defaultAzureCredential = new DefaultAzureCredentialBuilder().build();
+        }
+        return defaultAzureCredential;
+    }
+
+    private static DirectConnectionConfig directConnectionConfig(CosmosDbProperties.Connection connection,
+                                                                 int maxConnections) {
+        DirectConnectionConfig config = DirectConnectionConfig.getDefaultConfig();
+        config.setMaxConnectionsPerEndpoint(maxConnections);
+        if (connection.getMaxRequestsPerConnection() != null) {
+            config.setMaxRequestsPerConnection(connection.getMaxRequestsPerConnection());
+        }
+        if (connection.getConnectTimeout() != null) {
+            config.setConnectTimeout(connection.getConnectTimeout());
+        }
+        // Per-attempt RNTBD timeout (the SDK accepts 1-10s); the end-to-end deadline is requestTimeout
+        if (connection.getNetworkRequestTimeout() != null) {
+            config.setNetworkRequestTimeout(connection.getNetworkRequestTimeout());
+        }
+        if (connection.getIdleConnectionTimeout() != null) {
+            config.setIdleConnectionTimeout(connection.getIdleConnectionTimeout());
+        }
+        if (connection.getIdleEndpointTimeout() != null) {
+            config.setIdleEndpointTimeout(connection.getIdleEndpointTimeout());
+        }
+        return config;
+    }
+
+    private static GatewayConnectionConfig gatewayConnectionConfig(CosmosDbProperties.Connection connection,
+                                                                   int maxConnections) {
+        GatewayConnectionConfig config = GatewayConnectionConfig.getDefaultConfig();
+        config.setMaxConnectionPoolSize(maxConnections);
+        if (connection.getIdleConnectionTimeout() != null) {
+            config.setIdleConnectionTimeout(connection.getIdleConnectionTimeout());
+        }
+        return config;
+    }
+
+    /**
+     * Warm-up where openConnectionsAndInitCaches does not apply (Gateway mode, or no preferred regions):
+     * reading each container's properties and partition key ranges loads the SDK's caches and opens
+     * connections to the gateway. Failures are logged and do not stop startup.
+     */
+    private void warmUpByReading(CosmosAsyncClient client, CosmosDbProperties.Warmup warmup) {
+        log.info("Connection warm-up needs Direct mode and cosmos.connection.preferredRegions; "
+                + "reading container metadata and partition key ranges instead");
+        CosmosAsyncDatabase database = client.getDatabase(properties.getDefaultConfig().getDatabase());
+        Duration maxWait = warmup.getAggressiveDuration() != null ? warmup.getAggressiveDuration() : Duration.ofSeconds(30);
+
+        Flux.fromIterable(warmup.getContainers())
+                .flatMap(name -> {
+                    CosmosAsyncContainer container = database.getContainer(name);
+                    return container.read()
+                            .then(container.getFeedRanges())
+                            .doOnError(e -> log.warn("Warm-up of container {} failed: {}", name, e.getMessage()))
+                            .onErrorResume(e -> Mono.empty());
+                })
+                .then()
+                .timeout(maxWait, Mono.fromRunnable(() ->
+                        log.warn("Warm-up did not finish within {} ms; continuing startup", maxWait.toMillis())))
+                .block();
+    }
+
+    private CosmosContainerProactiveInitConfig proactiveInitConfig(CosmosDbProperties.Warmup warmup, int preferredRegions) {
+        String database = properties.getDefaultConfig().getDatabase();
+        List<CosmosContainerIdentity> containers = warmup.getContainers().stream()
+                .map(container -> new CosmosContainerIdentity(database, container))
+                .toList();
+        CosmosContainerProactiveInitConfigBuilder config = new CosmosContainerProactiveInitConfigBuilder(containers)
+                .setProactiveConnectionRegionsCount(Math.min(warmup.getProactiveConnectionRegions(), preferredRegions));
+        if (warmup.getAggressiveDuration() != null) {
+            config.setAggressiveWarmupDuration(warmup.getAggressiveDuration());
         }
+        return config.build();
+    }
 
-        return builder.buildAsyncClient();
+    private static ThrottlingRetryOptions throttlingRetryOptions(CosmosDbProperties.Connection connection) {
+        ThrottlingRetryOptions options = new ThrottlingRetryOptions();
+        if (connection.getMaxRetryAttemptsOnThrottledRequests() != null) {
+            options.setMaxRetryAttemptsOnThrottledRequests(connection.getMaxRetryAttemptsOnThrottledRequests());
+        }
+        if (connection.getMaxRetryWaitTime() != null) {
+            options.setMaxRetryWaitTime(connection.getMaxRetryWaitTime());
+        }
+        return options;
     }
 }
@@ -2,6 +2,13 @@ package com.ureca.cosmosdb.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "cosmos")
@@ -11,6 +18,20 @@ public class CosmosDbProperties {
     private Auth auth = new Auth();
     private DefaultConfig defaultConfig = new DefaultConfig();
     private Connection connection = new Connection();
+    private Query query = new Query();
+    private Cache cache = new Cache();
+    private Batch batch = new Batch();
+    private String backend = "COSMOS";
+    private InMemory inMemory = new InMemory();
+    private Warmup warmup = new Warmup();
+    private Diagnostics diagnostics = new Diagnostics();
+    private AccessLog accessLog = new AccessLog();
+    private RateLimit rateLimit = new RateLimit();
+    private Retry retry = new Retry();
+    private Server server = new Server();
+    private Hedging hedging = new Hedging();
+    private Routing routing = new Routing();
+    private LocalStore localStore = new LocalStore();
 
     public String getEndpoint() {
         return endpoint;
@@ -32,6 +53,62 @@ public class CosmosDbProperties {
         return connection;
     }
 
+    public Query getQuery() {
+        return query;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public InMemory getInMemory() {
+        return inMemory;
+    }
+
+    public Warmup getWarmup() {
+        return warmup;
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public Server getServer() {
+        return server;
+    }
+
+    public Hedging getHedging() {
+        return hedging;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public LocalStore getLocalStore() {
+        return localStore;
+    }
+
     public void setEndpoint(String endpoint) {
         this.endpoint = endpoint;
     }
@@ -52,6 +129,62 @@ public class CosmosDbProperties {
         this.connection = connection;
     }
 
+    public void setQuery(Query query) {
+        this.query = query;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
+    public void setInMemory(InMemory inMemory) {
+        this.inMemory = inMemory;
+    }
+
+    public void setWarmup(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public void setAccessLog(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public void setRetry(Retry retry) {
+        this.retry = retry;
+    }
+
+    public void setServer(Server server) {
+        this.server = server;
+    }
+
+    public void setHedging(Hedging hedging) {
+        this.hedging = hedging;
+    }
+
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+    }
+
+    public void setLocalStore(LocalStore localStore) {
+        this.localStore = localStore;
+    }
+
     public static class DefaultConfig {
         private String database;
 
@@ -76,10 +209,24 @@ public class CosmosDbProperties {
         }
     }
 
+    /**
+     * Client connection settings. {@code maxConnections} is the per-endpoint limit in Direct mode and the
+     * pool size in Gateway mode; unset values keep the SDK defaults. {@code requestTimeout} is the default
+     * end-to-end deadline for a request.
+     */
     public static class Connection {
         private String mode = "DIRECT";
         private int maxConnections = 100;
-        private String requestTimeout = "PT60S";
+        private Duration requestTimeout = Duration.ofSeconds(60);
+        private Integer maxRequestsPerConnection;
+        private Duration connectTimeout;
+        private Duration networkRequestTimeout;
+        private Duration idleConnectionTimeout;
+        private Duration idleEndpointTimeout;
+        private List<String> preferredRegions = new ArrayList<>();
+        private boolean contentResponseOnWrite = false;
+        private Integer maxRetryAttemptsOnThrottledRequests;
+        private Duration maxRetryWaitTime;
 
         public String getMode() {
             return mode;
@@ -89,10 +236,46 @@ public class CosmosDbProperties {
             return maxConnections;
         }
 
-        public String getRequestTimeout() {
+        public Duration getRequestTimeout() {
             return requestTimeout;
         }
 
+        public Integer getMaxRequestsPerConnection() {
+            return maxRequestsPerConnection;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public Duration getNetworkRequestTimeout() {
+            return networkRequestTimeout;
+        }
+
+        public Duration getIdleConnectionTimeout() {
+            return idleConnectionTimeout;
+        }
+
+        public Duration getIdleEndpointTimeout() {
+            return idleEndpointTimeout;
+        }
+
+        public List<String> getPreferredRegions() {
+            return preferredRegions;
+        }
+
+        public boolean isContentResponseOnWrite() {
+            return contentResponseOnWrite;
+        }
+
+        public Integer getMaxRetryAttemptsOnThrottledRequests() {
+            return maxRetryAttemptsOnThrottledRequests;
+        }
+
+        public Duration getMaxRetryWaitTime() {
+            return maxRetryWaitTime;
+        }
+
         public void setMode(String mode) {
             this.mode = mode;
         }
@@ -101,8 +284,891 @@ public class CosmosDbProperties {
             this.maxConnections = maxConnections;
         }
 
-        public void setRequestTimeout(String requestTimeout) {
+        public void setRequestTimeout(Duration requestTimeout) {
             this.requestTimeout = requestTimeout;
         }
+
+        public void setMaxRequestsPerConnection(Integer maxRequestsPerConnection) {
+            this.maxRequestsPerConnection = maxRequestsPerConnection;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public void setNetworkRequestTimeout(Duration networkRequestTimeout) {
+            this.networkRequestTimeout = networkRequestTimeout;
+        }
+
+        public void setIdleConnectionTimeout(Duration idleConnectionTimeout) {
+            this.idleConnectionTimeout = idleConnectionTimeout;
+        }
+
+        public void setIdleEndpointTimeout(Duration idleEndpointTimeout) {
+            this.idleEndpointTimeout = idleEndpointTimeout;
+        }
+
+        public void setPreferredRegions(List<String> preferredRegions) {
+            this.preferredRegions = preferredRegions;
+        }
+
+        public void setContentResponseOnWrite(boolean contentResponseOnWrite) {
+            this.contentResponseOnWrite = contentResponseOnWrite;
+        }
+
+        public void setMaxRetryAttemptsOnThrottledRequests(Integer maxRetryAttemptsOnThrottledRequests) {
+            this.maxRetryAttemptsOnThrottledRequests = maxRetryAttemptsOnThrottledRequests;
+        }
+
+        public void setMaxRetryWaitTime(Duration maxRetryWaitTime) {
+            this.maxRetryWaitTime = maxRetryWaitTime;
+        }
+    }
+
+    /**
+     * Query execution settings. Page size, cross-partition fan-out and buffering are separate knobs;
+     * requests may set them explicitly, but never above the configured limits.
+     */
+    public static class Query {
+        private boolean passthrough = false;
+        private boolean stripSystemProperties = false;
+        private boolean coalesceInFlight = false;
+        private boolean pointReadDetection = true;
+        private Integer defaultMaxItemCount;
+        private int maxItemCountLimit = 1000;
+        private Integer defaultMaxDegreeOfParallelism;
+        private int maxDegreeOfParallelismLimit = 16;
+        private Integer defaultMaxBufferedItemCount;
+        private int maxBufferedItemCountLimit = 10000;
+        private int defaultPrefetchPages = 1;
+        private int maxPrefetchPages = 8;
+        private int shapeCacheSize = 1024;
+        private int containerCacheSize = 256;
+
+        public boolean isPassthrough() {
+            return passthrough;
+        }
+
+        public boolean isStripSystemProperties() {
+            return stripSystemProperties;
+        }
+
+        public boolean isCoalesceInFlight() {
+            return coalesceInFlight;
+        }
+
+        public boolean isPointReadDetection() {
+            return pointReadDetection;
+        }
+
+        public Integer getDefaultMaxItemCount() {
+            return defaultMaxItemCount;
+        }
+
+        public int getMaxItemCountLimit() {
+            return maxItemCountLimit;
+        }
+
+        public Integer getDefaultMaxDegreeOfParallelism() {
+            return defaultMaxDegreeOfParallelism;
+        }
+
+        public int getMaxDegreeOfParallelismLimit() {
+            return maxDegreeOfParallelismLimit;
+        }
+
+        public Integer getDefaultMaxBufferedItemCount() {
+            return defaultMaxBufferedItemCount;
+        }
+
+        public int getMaxBufferedItemCountLimit() {
+            return maxBufferedItemCountLimit;
+        }
+
+        public int getDefaultPrefetchPages() {
+            return defaultPrefetchPages;
+        }
+
+        public int getMaxPrefetchPages() {
+            return maxPrefetchPages;
+        }
+
+        public int getShapeCacheSize() {
+            return shapeCacheSize;
+        }
+
+        public int getContainerCacheSize() {
+            return containerCacheSize;
+        }
+
+        public void setPassthrough(boolean passthrough) {
+            this.passthrough = passthrough;
+        }
+
+        public void setStripSystemProperties(boolean stripSystemProperties) {
+            this.stripSystemProperties = stripSystemProperties;
+        }
+
+        public void setCoalesceInFlight(boolean coalesceInFlight) {
+            this.coalesceInFlight = coalesceInFlight;
+        }
+
+        public void setPointReadDetection(boolean pointReadDetection) {
+            this.pointReadDetection = pointReadDetection;
+        }
+
+        public void setDefaultMaxItemCount(Integer defaultMaxItemCount) {
+            this.defaultMaxItemCount = defaultMaxItemCount;
+        }
+
+        public void setMaxItemCountLimit(int maxItemCountLimit) {
+            this.maxItemCountLimit = maxItemCountLimit;
+        }
+
+        public void setDefaultMaxDegreeOfParallelism(Integer defaultMaxDegreeOfParallelism) {
+            this.defaultMaxDegreeOfParallelism = defaultMaxDegreeOfParallelism;
+        }
+
+        public void setMaxDegreeOfParallelismLimit(int maxDegreeOfParallelismLimit) {
+            this.maxDegreeOfParallelismLimit = maxDegreeOfParallelismLimit;
+        }
+
+        public void setDefaultMaxBufferedItemCount(Integer defaultMaxBufferedItemCount) {
+            this.defaultMaxBufferedItemCount = defaultMaxBufferedItemCount;
+        }
+
+        public void setMaxBufferedItemCountLimit(int maxBufferedItemCountLimit) {
+            this.maxBufferedItemCountLimit = maxBufferedItemCountLimit;
+        }
+
+        public void setDefaultPrefetchPages(int defaultPrefetchPages) {
+            this.defaultPrefetchPages = defaultPrefetchPages;
+        }
+
+        public void setMaxPrefetchPages(int maxPrefetchPages) {
+            this.maxPrefetchPages = maxPrefetchPages;
+        }
+
+        public void setShapeCacheSize(int shapeCacheSize) {
+            this.shapeCacheSize = shapeCacheSize;
+        }
+
+        public void setContainerCacheSize(int containerCacheSize) {
+            this.containerCacheSize = containerCacheSize;
+        }
+    }
+
+    /**
+     * Response cache in front of query execution. A container TTL of zero disables caching for that container.
+     */
+    public static class Cache {
+        private boolean enabled = false;
+        private Duration defaultTtl = Duration.ofSeconds(5);
+        private Map<String, Duration> containerTtl = new HashMap<>();
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getDefaultTtl() {
+            return defaultTtl;
+        }
+
+        public Map<String, Duration> getContainerTtl() {
+            return containerTtl;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setDefaultTtl(Duration defaultTtl) {
+            this.defaultTtl = defaultTtl;
+        }
+
+        public void setContainerTtl(Map<String, Duration> containerTtl) {
+            this.containerTtl = containerTtl;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Batch {
+        private int maxParallelism = 8;
+        private int maxItems = 100;
+        private int maxReadManyItems = 1000;
+
+        public int getMaxParallelism() {
+            return maxParallelism;
+        }
+
+        public int getMaxItems() {
+            return maxItems;
+        }
+
+        public int getMaxReadManyItems() {
+            return maxReadManyItems;
+        }
+
+        public void setMaxParallelism(int maxParallelism) {
+            this.maxParallelism = maxParallelism;
+        }
+
+        public void setMaxItems(int maxItems) {
+            this.maxItems = maxItems;
+        }
+
+        public void setMaxReadManyItems(int maxReadManyItems) {
+            this.maxReadManyItems = maxReadManyItems;
+        }
+    }
+
+    /**
+     * Settings for the in-process backend used when {@code cosmos.backend} is {@code IN_MEMORY}.
+     */
+    public static class InMemory {
+        private String seedLocation;
+        private String partitionKeyPath = "/id";
+        private int defaultPageSize = 100;
+        private Duration latency = Duration.ZERO;
+        private Duration latencyJitter = Duration.ZERO;
+        private double queryBaseRu = 2.8;
+        private double ruPerKb = 1.0;
+        private double throttleRate = 0.0;
+        private Duration throttleRetryAfter = Duration.ofMillis(100);
+
+        public String getSeedLocation() {
+            return seedLocation;
+        }
+
+        public String getPartitionKeyPath() {
+            return partitionKeyPath;
+        }
+
+        public int getDefaultPageSize() {
+            return defaultPageSize;
+        }
+
+        public Duration getLatency() {
+            return latency;
+        }
+
+        public Duration getLatencyJitter() {
+            return latencyJitter;
+        }
+
+        public double getQueryBaseRu() {
+            return queryBaseRu;
+        }
+
+        public double getRuPerKb() {
+            return ruPerKb;
+        }
+
+        public double getThrottleRate() {
+            return throttleRate;
+        }
+
+        public Duration getThrottleRetryAfter() {
+            return throttleRetryAfter;
+        }
+
+        public void setSeedLocation(String seedLocation) {
+            this.seedLocation = seedLocation;
+        }
+
+        public void setPartitionKeyPath(String partitionKeyPath) {
+            this.partitionKeyPath = partitionKeyPath;
+        }
+
+        public void setDefaultPageSize(int defaultPageSize) {
+            this.defaultPageSize = defaultPageSize;
+        }
+
+        public void setLatency(Duration latency) {
+            this.latency = latency;
+        }
+
+        public void setLatencyJitter(Duration latencyJitter) {
+            this.latencyJitter = latencyJitter;
+        }
+
+        public void setQueryBaseRu(double queryBaseRu) {
+            this.queryBaseRu = queryBaseRu;
+        }
+
+        public void setRuPerKb(double ruPerKb) {
+            this.ruPerKb = ruPerKb;
+        }
+
+        public void setThrottleRate(double throttleRate) {
+            this.throttleRate = throttleRate;
+        }
+
+        public void setThrottleRetryAfter(Duration throttleRetryAfter) {
+            this.throttleRetryAfter = throttleRetryAfter;
+        }
+    }
+
+    /**
+     * Startup warm-up: open connections and load address and partition key range caches for these
+     * containers (in the default database) before the pod reports ready. Startup blocks for at most
+     * {@code aggressiveDuration}; anything left is finished in the background.
+     */
+    public static class Warmup {
+        private boolean enabled = true;
+        private List<String> containers = new ArrayList<>();
+        private int proactiveConnectionRegions = 1;
+        private Duration aggressiveDuration = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public List<String> getContainers() {
+            return containers;
+        }
+
+        public int getProactiveConnectionRegions() {
+            return proactiveConnectionRegions;
+        }
+
+        public Duration getAggressiveDuration() {
+            return aggressiveDuration;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setContainers(List<String> containers) {
+            this.containers = containers;
+        }
+
+        public void setProactiveConnectionRegions(int proactiveConnectionRegions) {
+            this.proactiveConnectionRegions = proactiveConnectionRegions;
+        }
+
+        public void setAggressiveDuration(Duration aggressiveDuration) {
+            this.aggressiveDuration = aggressiveDuration;
+        }
+    }
+
+    /**
+     * Slow/expensive query capture. Calls over either threshold have their SDK diagnostics kept in a
+     * ring buffer of {@code capacity} entries, served by the {@code slowqueries} actuator endpoint.
+     * Only a {@code sampleRate} fraction of them is captured, and at most {@code maxCapturesPerSecond}.
+     */
+    public static class Diagnostics {
+        private boolean enabled = true;
+        private Duration latencyThreshold = Duration.ofSeconds(1);
+        private double ruThreshold = 100.0;
+        private double sampleRate = 1.0;
+        private int maxCapturesPerSecond = 5;
+        private int capacity = 200;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getLatencyThreshold() {
+            return latencyThreshold;
+        }
+
+        public double getRuThreshold() {
+            return ruThreshold;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getMaxCapturesPerSecond() {
+            return maxCapturesPerSecond;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setLatencyThreshold(Duration latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+        }
+
+        public void setRuThreshold(double ruThreshold) {
+            this.ruThreshold = ruThreshold;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public void setMaxCapturesPerSecond(int maxCapturesPerSecond) {
+            this.maxCapturesPerSecond = maxCapturesPerSecond;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Asynchronous access log: one JSON line per request, written by a background thread. Entries that
+     * do not fit in the queue are dropped and counted rather than blocking the request.
+     */
+    public static class AccessLog {
+        private boolean enabled = true;
+        private int queueCapacity = 8192;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Client-side RU budget (opt-in). Each container gets a token bucket of {@code defaultRuPerSecond},
+     * unless {@code containerRuPerSecond} overrides it. When {@code callerRuPerSecond} is set, each
+     * X-Caller-Id also gets its own bucket per container. A bucket holds up to {@code burst} worth of RU.
+     * Requests wait at most {@code maxQueueWait} for budget before they are shed with a 429.
+     */
+    public static class RateLimit {
+        private boolean enabled = false;
+        private double defaultRuPerSecond = 1000.0;
+        private Map<String, Double> containerRuPerSecond = new HashMap<>();
+        private Double callerRuPerSecond;
+        private Duration burst = Duration.ofSeconds(1);
+        private Duration maxQueueWait = Duration.ofMillis(100);
+        private double initialCostEstimate = 5.0;
+        private double costSmoothing = 0.2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public double getDefaultRuPerSecond() {
+            return defaultRuPerSecond;
+        }
+
+        public Map<String, Double> getContainerRuPerSecond() {
+            return containerRuPerSecond;
+        }
+
+        public Double getCallerRuPerSecond() {
+            return callerRuPerSecond;
+        }
+
+        public Duration getBurst() {
+            return burst;
+        }
+
+        public Duration getMaxQueueWait() {
+            return maxQueueWait;
+        }
+
+        public double getInitialCostEstimate() {
+            return initialCostEstimate;
+        }
+
+        public double getCostSmoothing() {
+            return costSmoothing;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setDefaultRuPerSecond(double defaultRuPerSecond) {
+            this.defaultRuPerSecond = defaultRuPerSecond;
+        }
+
+        public void setContainerRuPerSecond(Map<String, Double> containerRuPerSecond) {
+            this.containerRuPerSecond = containerRuPerSecond;
+        }
+
+        public void setCallerRuPerSecond(Double callerRuPerSecond) {
+            this.callerRuPerSecond = callerRuPerSecond;
+        }
+
+        public void setBurst(Duration burst) {
+            this.burst = burst;
+        }
+
+        public void setMaxQueueWait(Duration maxQueueWait) {
+            this.maxQueueWait = maxQueueWait;
+        }
+
+        public void setInitialCostEstimate(double initialCostEstimate) {
+            this.initialCostEstimate = initialCostEstimate;
+        }
+
+        public void setCostSmoothing(double costSmoothing) {
+            this.costSmoothing = costSmoothing;
+        }
+    }
+
+    /**
+     * Sidecar-side retry of throttled and transient failures, on top of the SDK's own retries. The wait
+     * before a retry is the server's retry-after when present, and exponential backoff otherwise, plus up
+     * to {@code jitter} of that wait again. Retries never run past the request deadline. Across all
+     * requests they are limited to {@code budgetRatio} per request plus {@code minRetriesPerSecond}.
+     */
+    public static class Retry {
+        private boolean enabled = false;
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(50);
+        private Duration maxBackoff = Duration.ofSeconds(1);
+        private double jitter = 0.5;
+        private List<Integer> retryableStatusCodes = new ArrayList<>(List.of(429, 408, 503, 410));
+        private double budgetRatio = 0.1;
+        private double minRetriesPerSecond = 10.0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public List<Integer> getRetryableStatusCodes() {
+            return retryableStatusCodes;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public double getMinRetriesPerSecond() {
+            return minRetriesPerSecond;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+
+        public void setRetryableStatusCodes(List<Integer> retryableStatusCodes) {
+            this.retryableStatusCodes = retryableStatusCodes;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+
+        public void setMinRetriesPerSecond(double minRetriesPerSecond) {
+            this.minRetriesPerSecond = minRetriesPerSecond;
+        }
+    }
+
+    /**
+     * HTTP server tuning. {@code workerThreads} 0 means one event loop per available processor.
+     * {@code functionalQueryRoute} serves POST /cosmos/v1/query/{container} from a functional router
+     * instead of the annotated controller. {@code unixSocketPath}, when set, also serves the API on a Unix
+     * domain socket for callers in the same pod.
+     */
+    public static class Server {
+        private boolean functionalQueryRoute = false;
+        private int selectThreads = 1;
+        private int workerThreads = 0;
+        private int backlog = 1024;
+        private String unixSocketPath;
+
+        public boolean isFunctionalQueryRoute() {
+            return functionalQueryRoute;
+        }
+
+        public int getSelectThreads() {
+            return selectThreads;
+        }
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public int getBacklog() {
+            return backlog;
+        }
+
+        public String getUnixSocketPath() {
+            return unixSocketPath;
+        }
+
+        public void setFunctionalQueryRoute(boolean functionalQueryRoute) {
+            this.functionalQueryRoute = functionalQueryRoute;
+        }
+
+        public void setSelectThreads(int selectThreads) {
+            this.selectThreads = selectThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+
+        public void setBacklog(int backlog) {
+            this.backlog = backlog;
+        }
+
+        public void setUnixSocketPath(String unixSocketPath) {
+            this.unixSocketPath = unixSocketPath;
+        }
+    }
+
+    /**
+     * Change-feed-backed local copies of small, hot containers. {@code containers} maps each container to
+     * its partition key path. A copy serves requests only while its last caught-up poll is within
+     * {@code maxLag}. {@code resyncInterval} rebuilds the copy from the beginning of the change feed, which
+     * is how deletions are picked up (zero disables it); until then a deleted document is still served,
+     * and {@code maxLag} does not catch that. A container with more than {@code maxDocuments}
+     * documents is not kept locally.
+     */
+    public static class LocalStore {
+        private boolean enabled = false;
+        private Map<String, String> containers = new HashMap<>();
+        private Duration pollInterval = Duration.ofSeconds(1);
+        private int maxItemsPerPage = 1000;
+        private Duration maxLag = Duration.ofSeconds(30);
+        private Duration resyncInterval = Duration.ofHours(1);
+        private int maxDocuments = 100_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Map<String, String> getContainers() {
+            return containers;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public int getMaxItemsPerPage() {
+            return maxItemsPerPage;
+        }
+
+        public Duration getMaxLag() {
+            return maxLag;
+        }
+
+        public Duration getResyncInterval() {
+            return resyncInterval;
+        }
+
+        public int getMaxDocuments() {
+            return maxDocuments;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setContainers(Map<String, String> containers) {
+            this.containers = containers;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public void setMaxItemsPerPage(int maxItemsPerPage) {
+            this.maxItemsPerPage = maxItemsPerPage;
+        }
+
+        public void setMaxLag(Duration maxLag) {
+            this.maxLag = maxLag;
+        }
+
+        public void setResyncInterval(Duration resyncInterval) {
+            this.resyncInterval = resyncInterval;
+        }
+
+        public void setMaxDocuments(int maxDocuments) {
+            this.maxDocuments = maxDocuments;
+        }
+    }
+
+    /**
+     * Routing to other accounts and databases than the default. Requests name an account from
+     * {@code accounts} and/or a database with the X-Cosmos-Account and X-Cosmos-Database headers. Each
+     * account's client is created on first use and shared by every database in it.
+     * {@code maxInFlightPerTarget} caps the concurrent upstream calls per account and database (unset = no cap).
+     */
+    public static class Routing {
+        private Map<String, Account> accounts = new HashMap<>();
+        private Integer maxInFlightPerTarget;
+
+        public Map<String, Account> getAccounts() {
+            return accounts;
+        }
+
+        public Integer getMaxInFlightPerTarget() {
+            return maxInFlightPerTarget;
+        }
+
+        public void setAccounts(Map<String, Account> accounts) {
+            this.accounts = accounts;
+        }
+
+        public void setMaxInFlightPerTarget(Integer maxInFlightPerTarget) {
+            this.maxInFlightPerTarget = maxInFlightPerTarget;
+        }
+    }
+
+    /**
+     * A named Cosmos DB account. {@code database} is used when a request names the account but no
+     * database. {@code maxConnections} overrides cosmos.connection.maxConnections for this account's client,
+     * and {@code maxInFlight} overrides cosmos.routing.maxInFlightPerTarget for its databases.
+     */
+    public static class Account {
+        private String endpoint;
+        private String key;
+        private String authMode = "KEY";
+        private String database;
+        private Integer maxConnections;
+        private Integer maxInFlight;
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getAuthMode() {
+            return authMode;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public Integer getMaxConnections() {
+            return maxConnections;
+        }
+
+        public Integer getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setEndpoint(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public void setAuthMode(String authMode) {
+            this.authMode = authMode;
+        }
+
+        public void setDatabase(String database) {
+            this.database = database;
+        }
+
+        public void setMaxConnections(Integer maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public void setMaxInFlight(Integer maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    /**
+     * Hedged reads: a query or point read still running after {@code threshold} is sent to the next
+     * preferred region as well, and to the one after that every {@code thresholdStep}; the first response
+     * wins. Needs at least two preferred regions. {@code budgetRatio} caps hedged calls to that fraction of
+     * all calls.
+     */
+    public static class Hedging {
+        private boolean enabled = false;
+        private Duration threshold = Duration.ofMillis(100);
+        private Duration thresholdStep = Duration.ofMillis(50);
+        private double budgetRatio = 0.1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getThreshold() {
+            return threshold;
+        }
+
+        public Duration getThresholdStep() {
+            return thresholdStep;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void setThreshold(Duration threshold) {
+            this.threshold = threshold;
+        }
+
+        public void setThresholdStep(Duration thresholdStep) {
+            this.thresholdStep = thresholdStep;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
     }
 }
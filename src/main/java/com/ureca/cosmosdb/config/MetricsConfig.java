@@ -0,0 +1,40 @@
+package com.ureca.cosmosdb.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.config.MeterFilterReply;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Configuration
+public class MetricsConfig {
+
+    // Container names come from request paths; cap the number of series a typo or scan can create
+    private static final int MAX_CONTAINER_TAGS = 100;
+
+    /**
+     * Sidecar meters for the first {@value #MAX_CONTAINER_TAGS} container names are recorded; meters for
+     * further names are dropped, while the ones already seen keep reporting.
+     */
+    @Bean
+    public MeterFilter containerTagLimit() {
+        Set<String> containers = ConcurrentHashMap.newKeySet();
+        return new MeterFilter() {
+            @Override
+            public MeterFilterReply accept(Meter.Id id) {
+                String container = id.getTag("container");
+                if (container == null || !id.getName().startsWith("sidecar.")) {
+                    return MeterFilterReply.NEUTRAL;
+                }
+                if (containers.contains(container)
+                        || (containers.size() < MAX_CONTAINER_TAGS && containers.add(container))) {
+                    return MeterFilterReply.NEUTRAL;
+                }
+                return MeterFilterReply.DENY;
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.ureca.cosmosdb.config;
+
+import io.netty.channel.ChannelOption;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ReactorResourceFactory;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Event loop and socket settings for the embedded Reactor Netty server.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class NettyServerConfig {
+
+    private final CosmosDbProperties properties;
+
+    /**
+     * Dedicated event loops for the HTTP server instead of Reactor's global resources, so their size does
+     * not depend on what else in the process uses Reactor Netty.
+     */
+    @Bean
+    public ReactorResourceFactory reactorServerResourceFactory() {
+        CosmosDbProperties.Server server = properties.getServer();
+        int workerThreads = server.getWorkerThreads() > 0
+                ? server.getWorkerThreads()
+                : Runtime.getRuntime().availableProcessors();
+        log.info("HTTP server event loops: {} select, {} worker", server.getSelectThreads(), workerThreads);
+
+        ReactorResourceFactory factory = new ReactorResourceFactory();
+        factory.setUseGlobalResources(false);
+        factory.setLoopResources(LoopResources.create("sidecar-http", server.getSelectThreads(), workerThreads, true));
+        return factory;
+    }
+
+    @Bean
+    public NettyServerCustomizer socketOptionsCustomizer() {
+        int backlog = properties.getServer().getBacklog();
+        return httpServer -> httpServer
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ureca.cosmosdb.config;
+
+import io.netty.channel.unix.DomainSocketAddress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.client.ReactorResourceFactory;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Serves the same API as the TCP port on a Unix domain socket, for callers in the same pod. It skips the
+ * loopback TCP stack. The socket runs on the HTTP server's event loops, which must use the native epoll
+ * transport for domain sockets to be available.
+ * <p>
+ * Responses on the socket are not compressed: the bytes never leave the host, so compressing them only
+ * costs CPU on both sides. Nothing is started unless {@code cosmos.server.unix-socket-path} is set.
+ */
+@Component
+@Slf4j
+public class UnixDomainSocketServer implements SmartLifecycle {
+
+    private final HttpHandler httpHandler;
+    private final ReactorResourceFactory resourceFactory;
+    private final ServerProperties serverProperties;
+    private final Path socketPath;
+    private volatile DisposableServer server;
+
+    public UnixDomainSocketServer(HttpHandler httpHandler, ReactorResourceFactory resourceFactory,
+                                  ServerProperties serverProperties, CosmosDbProperties properties) {
+        this.httpHandler = httpHandler;
+        this.resourceFactory = resourceFactory;
+        this.serverProperties = serverProperties;
+        String path = properties.getServer().getUnixSocketPath();
+        this.socketPath = path != null && !path.isBlank() ? Path.of(path) : null;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return socketPath != null;
+    }
+
+    @Override
+    public void start() {
+        if (socketPath == null) {
+            return;
+        }
+        // A socket file left behind by a previous process would make the bind fail
+        deleteSocketFile();
+
+        HttpServer httpServer = HttpServer.create()
+                .bindAddress(() -> new DomainSocketAddress(socketPath.toString()))
+                .runOn(resourceFactory.getLoopResources())
+                .handle(new ReactorHttpHandlerAdapter(httpHandler));
+        if (serverProperties.getHttp2() != null && serverProperties.getHttp2().isEnabled()) {
+            httpServer = httpServer.protocol(HttpProtocol.HTTP11, HttpProtocol.H2C);
+        }
+
+        server = httpServer.bindNow();
+        log.info("Serving HTTP on Unix domain socket {}", socketPath);
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        if (current != null) {
+            current.disposeNow();
+            server = null;
+            deleteSocketFile();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    private void deleteSocketFile() {
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot remove socket file " + socketPath, e);
+        }
+    }
+}
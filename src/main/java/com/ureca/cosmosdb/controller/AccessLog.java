@@ -0,0 +1,139 @@
+package com.ureca.cosmosdb.controller;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.CosmosMetadata;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One structured JSON line per request, written off the request path.
+ * <p>
+ * Request threads only capture the raw fields into a bounded queue, which never blocks: when the queue
+ * is full the entry is dropped and counted. A single daemon thread formats the entries with a reused
+ * buffer and writes them to the {@code com.ureca.cosmosdb.access} logger.
+ */
+@Component
+public class AccessLog {
+
+    private static final Logger ACCESS = LoggerFactory.getLogger("com.ureca.cosmosdb.access");
+
+    private final boolean enabled;
+    private final BlockingQueue<Entry> queue;
+    private final Counter dropped;
+    private final Thread writer;
+
+    public AccessLog(CosmosDbProperties properties, MeterRegistry meterRegistry) {
+        CosmosDbProperties.AccessLog settings = properties.getAccessLog();
+        this.enabled = settings.isEnabled() && ACCESS.isInfoEnabled();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity()));
+        this.dropped = Counter.builder("sidecar.accesslog.dropped")
+                .description("Access log entries dropped because the queue was full")
+                .register(meterRegistry);
+        meterRegistry.gaugeCollectionSize("sidecar.accesslog.queued", Tags.empty(), queue);
+
+        this.writer = new Thread(this::drain, "access-log-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    public void record(String operation, String container, String requestId, int status, QueryResponse response,
+                       long startNanos) {
+        CosmosMetadata cosmos = response.getCosmos();
+        record(operation, container, requestId, status,
+                cosmos != null ? cosmos.getRu() : 0.0,
+                response.getData() != null ? response.getData().getCount() : 0,
+                cosmos != null ? cosmos.getActivityId() : null,
+                cosmos != null ? cosmos.getCacheHit() : null,
+                startNanos);
+    }
+
+    public void record(String operation, String container, String requestId, int status, double ru, int count,
+                       String activityId, Boolean cacheHit, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), (System.nanoTime() - startNanos) / 1000, operation,
+                container, requestId, status, ru, count, activityId, cacheHit);
+        if (!queue.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        writer.interrupt();
+        writer.join(1000);
+    }
+
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                write(line, queue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Flush what was accepted before shutdown
+        List<Entry> remaining = new ArrayList<>(queue.size());
+        queue.drainTo(remaining);
+        for (Entry entry : remaining) {
+            write(line, entry);
+        }
+    }
+
+    private static void write(StringBuilder line, Entry entry) {
+        line.setLength(0);
+        line.append("{\"ts\":\"").append(Instant.ofEpochMilli(entry.timestampMillis())).append('"');
+        field(line, "op", entry.operation());
+        field(line, "container", entry.container());
+        field(line, "requestId", entry.requestId());
+        line.append(",\"status\":").append(entry.status());
+        line.append(",\"latencyMs\":").append(entry.latencyMicros() / 1000.0);
+        line.append(",\"ru\":").append(entry.ru());
+        line.append(",\"count\":").append(entry.count());
+        field(line, "activityId", entry.activityId());
+        if (entry.cacheHit() != null) {
+            line.append(",\"cacheHit\":").append(entry.cacheHit());
+        }
+        line.append('}');
+        ACCESS.info(line.toString());
+    }
+
+    private static void field(StringBuilder line, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private record Entry(long timestampMillis, long latencyMicros, String operation, String container,
+                         String requestId, int status, double ru, int count, String activityId, Boolean cacheHit) {
+    }
+}
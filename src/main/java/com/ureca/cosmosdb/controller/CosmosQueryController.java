@@ -1,8 +1,16 @@
 package com.ureca.cosmosdb.controller;
 
+import com.ureca.cosmosdb.model.BatchQueryRequest;
+import com.ureca.cosmosdb.model.BatchQueryResponse;
+import com.ureca.cosmosdb.model.CosmosMetadata;
+import com.ureca.cosmosdb.model.ErrorInfo;
 import com.ureca.cosmosdb.model.QueryRequest;
+import com.ureca.cosmosdb.model.ReadManyRequest;
 import com.ureca.cosmosdb.model.QueryResponse;
+import com.ureca.cosmosdb.model.QueryStreamEvent;
 import com.ureca.cosmosdb.service.CosmosQueryService;
+import com.ureca.cosmosdb.service.CosmosTarget;
+import com.ureca.cosmosdb.service.QueryTuning;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,8 +21,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -25,6 +37,7 @@ import reactor.core.publisher.Mono;
 public class CosmosQueryController {
 
     private final CosmosQueryService queryService;
+    private final AccessLog accessLog;
 
     @PostMapping("/query/{container}")
     @Operation(
@@ -45,38 +58,234 @@ public class CosmosQueryController {
             @Parameter(description = "Query request with SQL and parameters", required = true) @RequestBody QueryRequest request,
             @Parameter(description = "Partition key value for optimized query performance") @RequestParam(required = false) String pk,
             @Parameter(description = "Maximum number of items to return per page") @RequestParam(required = false) Integer maxItemCount,
+            @Parameter(description = "Maximum number of partitions queried concurrently for cross-partition queries (capped at cosmos.query.max-degree-of-parallelism-limit)") @RequestParam(required = false) Integer maxDop,
+            @Parameter(description = "Maximum number of items buffered client-side during parallel cross-partition execution") @RequestParam(required = false) Integer maxBufferedItemCount,
             @Parameter(description = "Continuation token for pagination") @RequestParam(required = false) String ct,
+            @Parameter(description = "Return documents exactly as stored without converting them to maps (defaults to cosmos.query.passthrough)") @RequestParam(required = false) Boolean passthrough,
             @Parameter(description = "Request ID for correlation and tracing") @RequestHeader(value = "X-Request-Id", required = false) String requestId,
-            @Parameter(description = "Request timeout in milliseconds") @RequestHeader(value = "X-Timeout-Ms", required = false) Integer timeoutMs) {
+            @Parameter(description = "Request timeout in milliseconds (capped at cosmos.connection.requestTimeout)") @RequestHeader(value = "X-Timeout-Ms", required = false) Integer timeoutMs,
+            @Parameter(description = "Caller identity for the per-caller RU budget (cosmos.rate-limit.caller-ru-per-second)") @RequestHeader(value = "X-Caller-Id", required = false) String callerId,
+            @Parameter(description = "Named account from cosmos.routing.accounts (defaults to the account in cosmos.endpoint)") @RequestHeader(value = "X-Cosmos-Account", required = false) String account,
+            @Parameter(description = "Database to query (defaults to the account's default database)") @RequestHeader(value = "X-Cosmos-Database", required = false) String database) {
 
-        log.info("Received query request for container: {}, requestId: {}", container, requestId);
+        long start = System.nanoTime();
         log.debug("Query SQL: {}, Params: {}, PK: {}", request.getSql(), request.getParams(), pk);
 
-        return queryService.executeQuery(container, request, pk, maxItemCount, ct)
+        return queryService.executeQuery(container, request, pk, maxItemCount, ct, passthrough,
+                        new QueryTuning(maxDop, maxBufferedItemCount, null), timeoutMs, callerId,
+                        CosmosTarget.of(account, database))
+                .map(response -> toLoggedResponseEntity("query", container, requestId, response, start));
+    }
+
+    @PostMapping("/batch")
+    @Operation(
+        summary = "Execute many Cosmos DB queries in one call",
+        description = "Executes a list of independent queries concurrently (bounded by cosmos.batch.max-parallelism) and " +
+                "returns one QueryResponse per item in request order. Each item succeeds or fails independently"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch executed; check each item's ok flag",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchQueryResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Bad request - empty batch or too many items")
+    })
+    public Mono<ResponseEntity<BatchQueryResponse>> batch(
+            @Parameter(description = "Queries to execute", required = true) @RequestBody BatchQueryRequest request,
+            @Parameter(description = "Request ID for correlation and tracing") @RequestHeader(value = "X-Request-Id", required = false) String requestId,
+            @Parameter(description = "Request timeout in milliseconds (capped at cosmos.connection.requestTimeout)") @RequestHeader(value = "X-Timeout-Ms", required = false) Integer timeoutMs,
+            @Parameter(description = "Caller identity for the per-caller RU budget (cosmos.rate-limit.caller-ru-per-second)") @RequestHeader(value = "X-Caller-Id", required = false) String callerId,
+            @Parameter(description = "Named account from cosmos.routing.accounts (defaults to the account in cosmos.endpoint)") @RequestHeader(value = "X-Cosmos-Account", required = false) String account,
+            @Parameter(description = "Database to query (defaults to the account's default database)") @RequestHeader(value = "X-Cosmos-Database", required = false) String database) {
+
+        long start = System.nanoTime();
+
+        return queryService.executeBatch(request.getItems(), timeoutMs, callerId, CosmosTarget.of(account, database))
                 .map(response -> {
-                    // Build response with headers
-                    ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(determineHttpStatus(response));
-                    
-                    // Add standard headers
-                    if (response.getCosmos() != null) {
-                        responseBuilder.header("X-Cosmos-RU", String.valueOf(response.getCosmos().getRu()));
-                        responseBuilder.header("X-Cosmos-Activity-Id", response.getCosmos().getActivityId());
-                        responseBuilder.header("X-Cosmos-SubStatus", String.valueOf(response.getCosmos().getSubStatus()));
-                        
-                        if (response.getCosmos().getRetryAfterMs() != null) {
-                            responseBuilder.header("X-Cosmos-Retry-After-Ms", 
-                                    String.valueOf(response.getCosmos().getRetryAfterMs()));
-                        }
+                    HttpStatus status = response.isOk() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+                    accessLog.record("batch", null, requestId, status.value(),
+                            response.getRu() != null ? response.getRu() : 0.0,
+                            response.getCount() != null ? response.getCount() : 0, null, null, start);
+
+                    ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(status);
+                    if (response.getRu() != null) {
+                        responseBuilder.header("X-Cosmos-RU", String.valueOf(response.getRu()));
                     }
-                    
                     if (requestId != null) {
                         responseBuilder.header("X-Request-Id", requestId);
                     }
-
                     return responseBuilder.body(response);
                 });
     }
 
+    @GetMapping("/item/{container}/{id}")
+    @Operation(
+        summary = "Read a single item by id and partition key",
+        description = "Point read of one item. This is the cheapest (~1 RU for a 1 KB item) and lowest-latency operation Cosmos DB offers"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Item found",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = QueryResponse.class))),
+        @ApiResponse(responseCode = "404", description = "Item or container not found"),
+        @ApiResponse(responseCode = "408", description = "Request timeout"),
+        @ApiResponse(responseCode = "429", description = "Too many requests - rate limited by Cosmos DB"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public Mono<ResponseEntity<QueryResponse>> readItem(
+            @Parameter(description = "Cosmos DB container name", required = true) @PathVariable String container,
+            @Parameter(description = "Item id", required = true) @PathVariable String id,
+            @Parameter(description = "Partition key value of the item", required = true) @RequestParam String pk,
+            @Parameter(description = "Return the document exactly as stored without converting it to a map (defaults to cosmos.query.passthrough)") @RequestParam(required = false) Boolean passthrough,
+            @Parameter(description = "Request ID for correlation and tracing") @RequestHeader(value = "X-Request-Id", required = false) String requestId,
+            @Parameter(description = "Request timeout in milliseconds (capped at cosmos.connection.requestTimeout)") @RequestHeader(value = "X-Timeout-Ms", required = false) Integer timeoutMs,
+            @Parameter(description = "Caller identity for the per-caller RU budget (cosmos.rate-limit.caller-ru-per-second)") @RequestHeader(value = "X-Caller-Id", required = false) String callerId,
+            @Parameter(description = "Named account from cosmos.routing.accounts (defaults to the account in cosmos.endpoint)") @RequestHeader(value = "X-Cosmos-Account", required = false) String account,
+            @Parameter(description = "Database to query (defaults to the account's default database)") @RequestHeader(value = "X-Cosmos-Database", required = false) String database) {
+
+        long start = System.nanoTime();
+
+        return queryService.readItem(container, id, pk, passthrough, timeoutMs, callerId,
+                        CosmosTarget.of(account, database))
+                .map(response -> toLoggedResponseEntity("item", container, requestId, response, start));
+    }
+
+    @PostMapping("/items/{container}")
+    @Operation(
+        summary = "Read many items by id and partition key",
+        description = "Reads a list of (id, pk) pairs with the SDK's readMany, grouped by partition. Much cheaper in RU and " +
+                "latency than an IN (...) query. Items that do not exist are omitted; the RU is the total for all items"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Items read successfully",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = QueryResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Bad request - empty list, too many items or missing id/pk"),
+        @ApiResponse(responseCode = "404", description = "Container not found"),
+        @ApiResponse(responseCode = "429", description = "Too many requests - rate limited by Cosmos DB"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public Mono<ResponseEntity<QueryResponse>> readMany(
+            @Parameter(description = "Cosmos DB container name", required = true) @PathVariable String container,
+            @Parameter(description = "Items to read", required = true) @RequestBody ReadManyRequest request,
+            @Parameter(description = "Return documents exactly as stored without converting them to maps (defaults to cosmos.query.passthrough)") @RequestParam(required = false) Boolean passthrough,
+            @Parameter(description = "Request ID for correlation and tracing") @RequestHeader(value = "X-Request-Id", required = false) String requestId,
+            @Parameter(description = "Request timeout in milliseconds (capped at cosmos.connection.requestTimeout)") @RequestHeader(value = "X-Timeout-Ms", required = false) Integer timeoutMs,
+            @Parameter(description = "Caller identity for the per-caller RU budget (cosmos.rate-limit.caller-ru-per-second)") @RequestHeader(value = "X-Caller-Id", required = false) String callerId,
+            @Parameter(description = "Named account from cosmos.routing.accounts (defaults to the account in cosmos.endpoint)") @RequestHeader(value = "X-Cosmos-Account", required = false) String account,
+            @Parameter(description = "Database to query (defaults to the account's default database)") @RequestHeader(value = "X-Cosmos-Database", required = false) String database) {
+
+        long start = System.nanoTime();
+
+        return queryService.readMany(container, request.getItems(), passthrough, timeoutMs, callerId,
+                        CosmosTarget.of(account, database))
+                .map(response -> toLoggedResponseEntity("items", container, requestId, response, start));
+    }
+
+    @PostMapping(value = "/query/{container}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+        summary = "Stream all pages of a Cosmos DB query",
+        description = "Executes a SQL query and streams every page as newline-delimited JSON (one page event per line), " +
+                "optionally stopping once maxItems or maxRu is reached. The last line is an end event with the total RU " +
+                "and the continuation token to resume from, or an error event if a page fails."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Query stream started; errors are reported in-band as error events",
+            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = QueryStreamEvent.class)))
+    })
+    public ResponseEntity<Flux<QueryStreamEvent>> streamQuery(
+            @Parameter(description = "Cosmos DB container name", required = true) @PathVariable String container,
+            @Parameter(description = "Query request with SQL and parameters", required = true) @RequestBody QueryRequest request,
+            @Parameter(description = "Partition key value for optimized query performance") @RequestParam(required = false) String pk,
+            @Parameter(description = "Maximum number of items per page") @RequestParam(required = false) Integer maxItemCount,
+            @Parameter(description = "Maximum number of partitions queried concurrently for cross-partition queries (capped at cosmos.query.max-degree-of-parallelism-limit)") @RequestParam(required = false) Integer maxDop,
+            @Parameter(description = "Maximum number of items buffered client-side during parallel cross-partition execution") @RequestParam(required = false) Integer maxBufferedItemCount,
+            @Parameter(description = "Number of pages fetched ahead of the client (capped at cosmos.query.max-prefetch-pages)") @RequestParam(required = false) Integer prefetch,
+            @Parameter(description = "Continuation token to start from") @RequestParam(required = false) String ct,
+            @Parameter(description = "Return documents exactly as stored without converting them to maps (defaults to cosmos.query.passthrough)") @RequestParam(required = false) Boolean passthrough,
+            @Parameter(description = "Stop after the page on which this many items have been streamed") @RequestParam(required = false) Integer maxItems,
+            @Parameter(description = "Stop after the page on which this many RU have been consumed") @RequestParam(required = false) Double maxRu,
+            @Parameter(description = "Request ID for correlation and tracing") @RequestHeader(value = "X-Request-Id", required = false) String requestId,
+            @Parameter(description = "Caller identity for the per-caller RU budget (cosmos.rate-limit.caller-ru-per-second)") @RequestHeader(value = "X-Caller-Id", required = false) String callerId,
+            @Parameter(description = "Named account from cosmos.routing.accounts (defaults to the account in cosmos.endpoint)") @RequestHeader(value = "X-Cosmos-Account", required = false) String account,
+            @Parameter(description = "Database to query (defaults to the account's default database)") @RequestHeader(value = "X-Cosmos-Database", required = false) String database) {
+
+        long start = System.nanoTime();
+
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON);
+        if (requestId != null) {
+            responseBuilder.header("X-Request-Id", requestId);
+        }
+        return responseBuilder.body(
+                queryService.streamQuery(container, request, pk, maxItemCount, ct, passthrough,
+                                new QueryTuning(maxDop, maxBufferedItemCount, prefetch), maxItems, maxRu, callerId,
+                                CosmosTarget.of(account, database))
+                        .doOnNext(event -> logStreamEnd(container, requestId, event, start)));
+    }
+
+    /**
+     * Malformed parameters, headers and bodies (a non-numeric X-Timeout-Ms, unreadable JSON, a missing
+     * body) get the usual envelope as a 400 BadRequest instead of Spring's default error body.
+     */
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<QueryResponse> handleInputError(ServerWebInputException e, ServerWebExchange exchange) {
+        return toResponseEntity(badRequest(e.getReason()), exchange.getRequest().getHeaders().getFirst("X-Request-Id"));
+    }
+
+    private ResponseEntity<QueryResponse> toLoggedResponseEntity(String operation, String container, String requestId,
+                                                                 QueryResponse response, long startNanos) {
+        ResponseEntity<QueryResponse> entity = toResponseEntity(response, requestId);
+        accessLog.record(operation, container, requestId, entity.getStatusCode().value(), response, startNanos);
+        return entity;
+    }
+
+    private void logStreamEnd(String container, String requestId, QueryStreamEvent event, long startNanos) {
+        if (QueryStreamEvent.TYPE_PAGE.equals(event.getType())) {
+            return;
+        }
+        // The HTTP status of a stream is always 200; the access log records how it actually ended
+        CosmosMetadata cosmos = event.getCosmos();
+        accessLog.record("stream", container, requestId, cosmos != null ? cosmos.getStatusCode() : 200,
+                cosmos != null ? cosmos.getRu() : 0.0,
+                event.getData() != null ? event.getData().getCount() : 0,
+                cosmos != null ? cosmos.getActivityId() : null, null, startNanos);
+    }
+
+    ResponseEntity<QueryResponse> toResponseEntity(QueryResponse response, String requestId) {
+        // Build response with headers
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(determineHttpStatus(response));
+
+        // Add standard headers
+        if (response.getCosmos() != null) {
+            responseBuilder.header("X-Cosmos-RU", String.valueOf(response.getCosmos().getRu()));
+            responseBuilder.header("X-Cosmos-Activity-Id", response.getCosmos().getActivityId());
+            responseBuilder.header("X-Cosmos-SubStatus", String.valueOf(response.getCosmos().getSubStatus()));
+
+            if (response.getCosmos().getRetryAfterMs() != null) {
+                responseBuilder.header("X-Cosmos-Retry-After-Ms",
+                        String.valueOf(response.getCosmos().getRetryAfterMs()));
+            }
+        }
+
+        if (requestId != null) {
+            responseBuilder.header("X-Request-Id", requestId);
+        }
+
+        return responseBuilder.body(response);
+    }
+
+    static QueryResponse badRequest(String message) {
+        return QueryResponse.builder()
+                .ok(false)
+                .error(ErrorInfo.builder()
+                        .code("BadRequest")
+                        .message(message)
+                        .build())
+                .cosmos(CosmosMetadata.builder()
+                        .ru(0.0)
+                        .statusCode(400)
+                        .activityId("N/A")
+                        .subStatus(0)
+                        .build())
+                .build();
+    }
+
     private HttpStatus determineHttpStatus(QueryResponse response) {
         if (response.isOk()) {
             return HttpStatus.OK;
@@ -0,0 +1,114 @@
+package com.ureca.cosmosdb.controller;
+
+import com.ureca.cosmosdb.model.QueryRequest;
+import com.ureca.cosmosdb.model.QueryResponse;
+import com.ureca.cosmosdb.service.CosmosQueryService;
+import com.ureca.cosmosdb.service.CosmosTarget;
+import com.ureca.cosmosdb.service.QueryTuning;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import static com.ureca.cosmosdb.controller.CosmosQueryController.badRequest;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Functional-router variant of {@code POST /cosmos/v1/query/{container}}. It skips annotated handler
+ * method resolution (argument resolvers, parameter annotation processing) on the hottest endpoint. Router
+ * functions are consulted before annotated controllers, so when enabled this route takes precedence;
+ * request parameters, headers and the response are the same.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cosmos.server", name = "functional-query-route", havingValue = "true")
+@RequiredArgsConstructor
+public class QueryRouter {
+
+    private final CosmosQueryService queryService;
+    private final CosmosQueryController controller;
+    private final AccessLog accessLog;
+
+    @Bean
+    public RouterFunction<ServerResponse> queryRoute() {
+        return route(POST("/cosmos/v1/query/{container}"), this::query);
+    }
+
+    private Mono<ServerResponse> query(ServerRequest request) {
+        long start = System.nanoTime();
+        String container = request.pathVariable("container");
+        String requestId = request.headers().firstHeader("X-Request-Id");
+        String callerId = request.headers().firstHeader("X-Caller-Id");
+        CosmosTarget target = CosmosTarget.of(request.headers().firstHeader("X-Cosmos-Account"),
+                request.headers().firstHeader("X-Cosmos-Database"));
+
+        // Malformed values and bodies are a 400 with the usual envelope, as the controller's
+        // ServerWebInputException handler answers them on the annotated route
+        Integer timeoutMs;
+        Integer maxItemCount;
+        Boolean passthrough;
+        QueryTuning tuning;
+        try {
+            timeoutMs = intValue("X-Timeout-Ms", request.headers().firstHeader("X-Timeout-Ms"));
+            maxItemCount = intValue("maxItemCount", request.queryParam("maxItemCount").orElse(null));
+            passthrough = booleanValue("passthrough", request.queryParam("passthrough").orElse(null));
+            tuning = new QueryTuning(
+                    intValue("maxDop", request.queryParam("maxDop").orElse(null)),
+                    intValue("maxBufferedItemCount", request.queryParam("maxBufferedItemCount").orElse(null)),
+                    null);
+        } catch (IllegalArgumentException e) {
+            return respond(container, requestId, badRequest(e.getMessage()), start);
+        }
+
+        return request.bodyToMono(QueryRequest.class)
+                .flatMap(body -> queryService.executeQuery(container, body,
+                        request.queryParam("pk").orElse(null), maxItemCount,
+                        request.queryParam("ct").orElse(null), passthrough,
+                        tuning, timeoutMs, callerId, target))
+                .switchIfEmpty(Mono.fromSupplier(() -> badRequest("Request body is required")))
+                .onErrorResume(ServerWebInputException.class, e -> Mono.just(badRequest(e.getReason())))
+                .flatMap(response -> respond(container, requestId, response, start));
+    }
+
+    private Mono<ServerResponse> respond(String container, String requestId, QueryResponse response, long start) {
+        ResponseEntity<QueryResponse> entity = controller.toResponseEntity(response, requestId);
+        accessLog.record("query", container, requestId, entity.getStatusCode().value(), response, start);
+        return ServerResponse.status(entity.getStatusCode())
+                .headers(headers -> headers.addAll(entity.getHeaders()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(response);
+    }
+
+    private static Integer intValue(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": '" + value + "' is not an integer");
+        }
+    }
+
+    /**
+     * Accepts the values Spring's own String to Boolean conversion accepts on the annotated route.
+     */
+    private static Boolean booleanValue(String name, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "true", "on", "yes", "1" -> Boolean.TRUE;
+            case "false", "off", "no", "0" -> Boolean.FALSE;
+            default -> throw new IllegalArgumentException(
+                    "Invalid value for " + name + ": '" + value + "' is not true or false");
+        };
+    }
+}
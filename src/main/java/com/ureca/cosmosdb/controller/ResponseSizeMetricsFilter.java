@@ -0,0 +1,62 @@
+package com.ureca.cosmosdb.controller;
+
+import com.ureca.cosmosdb.service.QueryMetrics;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes written for each API response, including streamed NDJSON bodies, and records them
+ * per container as {@code sidecar.response.bytes}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResponseSizeMetricsFilter implements WebFilter {
+
+    private static final String API_PATH_PREFIX = "/cosmos/";
+
+    private final QueryMetrics queryMetrics;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().value().startsWith(API_PATH_PREFIX)) {
+            return chain.filter(exchange);
+        }
+
+        AtomicLong bytes = new AtomicLong();
+        ServerHttpResponseDecorator response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return super.writeWith(Flux.from(body).doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount())));
+            }
+
+            @Override
+            public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                return super.writeAndFlushWith(Flux.from(body).map(chunk -> Flux.from(chunk)
+                        .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))));
+            }
+        };
+
+        return chain.filter(exchange.mutate().response(response).build())
+                .doFinally(signal -> record(exchange, bytes.get()));
+    }
+
+    private void record(ServerWebExchange exchange, long bytes) {
+        Map<String, String> pathVariables = exchange.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String container = pathVariables != null ? pathVariables.getOrDefault("container", "none") : "none";
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        queryMetrics.recordResponseBytes(container, status != null ? status.value() : 200, bytes);
+    }
+}
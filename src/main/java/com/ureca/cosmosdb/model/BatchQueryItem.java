@@ -0,0 +1,41 @@
+package com.ureca.cosmosdb.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "One query of a batch request")
+public class BatchQueryItem {
+
+    @Schema(description = "Cosmos DB container name", example = "users", required = true)
+    private String container;
+
+    @Schema(description = "SQL query with parameterized syntax",
+            example = "SELECT * FROM c WHERE c.userId = @userId",
+            required = true)
+    private String sql;
+
+    @Schema(description = "Map of parameter names to values for parameterized query",
+            example = "{\"userId\": \"u-001\"}")
+    private Map<String, Object> params;
+
+    @Schema(description = "Partition key value for optimized query performance", example = "u-001")
+    private String pk;
+
+    @Schema(description = "Maximum number of items to return", example = "10")
+    private Integer maxItemCount;
+
+    @Schema(description = "Continuation token for pagination")
+    private String ct;
+
+    @Schema(description = "Return documents exactly as stored without converting them to maps")
+    private Boolean passthrough;
+}
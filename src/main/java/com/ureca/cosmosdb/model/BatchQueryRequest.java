@@ -0,0 +1,18 @@
+package com.ureca.cosmosdb.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Batch of independent queries executed in one HTTP call")
+public class BatchQueryRequest {
+
+    @Schema(description = "Queries to execute; results are returned in the same order", required = true)
+    private List<BatchQueryItem> items;
+}
@@ -0,0 +1,34 @@
+package com.ureca.cosmosdb.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Response from batch query execution")
+public class BatchQueryResponse {
+
+    @Schema(description = "Indicates if the batch was accepted; individual queries report their own outcome", example = "true")
+    private boolean ok;
+
+    @Schema(description = "Number of query responses", example = "2")
+    private Integer count;
+
+    @Schema(description = "Per-query responses, in request order (present when ok=true)")
+    private List<QueryResponse> results;
+
+    @Schema(description = "Error information when the batch itself was rejected (present when ok=false)")
+    private ErrorInfo error;
+
+    @Schema(description = "Total Request Units (RU) consumed by all queries in the batch", example = "14.2")
+    private Double ru;
+}
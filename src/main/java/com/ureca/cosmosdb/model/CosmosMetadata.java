@@ -1,5 +1,6 @@
 package com.ureca.cosmosdb.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,9 +8,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Schema(description = "Cosmos DB metadata and diagnostics")
 public class CosmosMetadata {
     
@@ -27,4 +29,22 @@ public class CosmosMetadata {
     
     @Schema(description = "Retry after duration in milliseconds (present on 429 throttling)", example = "5000")
     private Integer retryAfterMs;
+
+    @Schema(description = "True when the response was served from the sidecar's result cache (absent otherwise)", example = "true")
+    private Boolean cacheHit;
+
+    @Schema(description = "True when the response was served from the sidecar's change-feed copy of the container (absent otherwise)", example = "true")
+    private Boolean localStore;
+
+    @Schema(description = "Number of upstream attempts, including sidecar retries (present when retry is enabled)", example = "2")
+    private Integer attempts;
+
+    @Schema(description = "Request Units consumed across all attempts (present when retry is enabled)", example = "5.66")
+    private Double totalRu;
+
+    @Schema(description = "True when the call was also sent to another preferred region after the hedging threshold (absent otherwise)", example = "true")
+    private Boolean hedged;
+
+    @Schema(description = "On a hedged call, whether the other region answered first (present when hedged)", example = "false")
+    private Boolean hedgeWon;
 }
@@ -0,0 +1,19 @@
+package com.ureca.cosmosdb.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Id and partition key of an item")
+public class ItemReference {
+
+    @Schema(description = "Item id", example = "u-001", required = true)
+    private String id;
+
+    @Schema(description = "Partition key value of the item", example = "u-001", required = true)
+    private String pk;
+}
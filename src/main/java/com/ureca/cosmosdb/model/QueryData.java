@@ -21,7 +21,7 @@ public class QueryData {
     private int count;
     
     @Schema(description = "List of result items from the query")
-    private List<Object> results;
+    private List<?> results;
     
     @Schema(description = "Continuation token for pagination (use in 'ct' query parameter for next page)")
     private String continuationToken;
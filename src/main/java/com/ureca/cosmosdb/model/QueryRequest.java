@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -21,4 +22,21 @@ public class QueryRequest {
     @Schema(description = "Map of parameter names to values for parameterized query", 
             example = "{\"userId\": \"u-001\"}")
     private Map<String, Object> params;
+
+    @Schema(description = "Only these fields of each result are returned; dot-separated paths reach nested fields",
+            example = "[\"id\", \"name\", \"address.city\"]")
+    private List<String> fields;
+
+    @Schema(description = "These fields of each result are left out; cannot be combined with fields",
+            example = "[\"history\", \"address.geo\"]")
+    private List<String> excludeFields;
+
+    @Schema(description = "Leave out the system properties _rid, _self, _etag, _attachments and _ts "
+            + "(defaults to cosmos.query.strip-system-properties)")
+    private Boolean stripSystemProperties;
+
+    public QueryRequest(String sql, Map<String, Object> params) {
+        this.sql = sql;
+        this.params = params;
+    }
 }
@@ -0,0 +1,36 @@
+package com.ureca.cosmosdb.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "One line of a streamed (NDJSON) query response")
+public class QueryStreamEvent {
+
+    public static final String TYPE_PAGE = "page";
+    public static final String TYPE_END = "end";
+    public static final String TYPE_ERROR = "error";
+
+    @Schema(description = "Event type: page, end (trailer) or error", example = "page")
+    private String type;
+
+    @Schema(description = "Zero-based page index (page events) or number of pages streamed (end and error events)", example = "0")
+    private Integer page;
+
+    @Schema(description = "Page results (page events) or total count and final continuation token (end and error events)")
+    private QueryData data;
+
+    @Schema(description = "Error information (error events)")
+    private ErrorInfo error;
+
+    @Schema(description = "Cosmos DB metadata: RU of this page (page events) or total RU across all pages (end events)")
+    private CosmosMetadata cosmos;
+}
@@ -0,0 +1,18 @@
+package com.ureca.cosmosdb.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Items to read by id and partition key")
+public class ReadManyRequest {
+
+    @Schema(description = "Items to read; items that do not exist are omitted from the results", required = true)
+    private List<ItemReference> items;
+}
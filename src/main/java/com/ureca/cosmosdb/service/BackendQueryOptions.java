@@ -0,0 +1,30 @@
+package com.ureca.cosmosdb.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Per-request query options passed to a {@link CosmosQueryBackend}.
+ */
+@Value
+@Builder(toBuilder = true)
+public class BackendQueryOptions {
+    String partitionKey;
+    /**
+     * Page size. Unrelated to cross-partition fan-out, which is {@link #maxDegreeOfParallelism}.
+     */
+    Integer maxItemCount;
+    String continuationToken;
+    Integer maxDegreeOfParallelism;
+    Integer maxBufferedItemCount;
+    /**
+     * End-to-end deadline for the operation; the backend should give up (and free its connection) after it.
+     */
+    Duration timeout;
+    /**
+     * Account and database to run against; null means {@link CosmosTarget#DEFAULT}.
+     */
+    CosmosTarget target;
+}
@@ -0,0 +1,46 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.CosmosException;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Backend-neutral failure carrying the Cosmos DB status information needed for the error envelope.
+ */
+@Getter
+public class CosmosBackendException extends RuntimeException {
+
+    private final int statusCode;
+    private final int subStatusCode;
+    private final String activityId;
+    private final double requestCharge;
+    private final Duration retryAfterDuration;
+
+    public CosmosBackendException(int statusCode, int subStatusCode, String message, String activityId,
+                                  double requestCharge, Duration retryAfterDuration, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.subStatusCode = subStatusCode;
+        this.activityId = activityId;
+        this.requestCharge = requestCharge;
+        this.retryAfterDuration = retryAfterDuration;
+    }
+
+    /**
+     * SDK diagnostics of the failed call, or null when the backend provides none. Rendering them is not free.
+     */
+    public String renderDiagnostics() {
+        if (getCause() instanceof CosmosException e && e.getDiagnostics() != null) {
+            return e.getDiagnostics().toString();
+        }
+        return null;
+    }
+
+    public static CosmosBackendException from(CosmosException e) {
+        Duration retryAfter = e.getRetryAfterDuration();
+        return new CosmosBackendException(e.getStatusCode(), e.getSubStatusCode(), e.getMessage(),
+                e.getActivityId(), e.getRequestCharge(),
+                retryAfter != null && !retryAfter.isZero() ? retryAfter : null, e);
+    }
+}
@@ -0,0 +1,50 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.JsonNode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Data access SPI used by {@link CosmosQueryService}.
+ * <p>
+ * Implementations report failures as {@link CosmosBackendException} so the service can map them
+ * to the standard error envelope regardless of where the data came from.
+ */
+public interface CosmosQueryBackend {
+
+    /**
+     * Executes a query and emits every page starting at {@code options.continuationToken}.
+     */
+    <T> Flux<QueryPage<T>> queryPages(String containerName, SqlQuerySpec querySpec,
+                                      BackendQueryOptions options, Class<T> itemType);
+
+    /**
+     * Executes a query and emits only the first page.
+     */
+    default <T> Mono<QueryPage<T>> queryPage(String containerName, SqlQuerySpec querySpec,
+                                             BackendQueryOptions options, Class<T> itemType) {
+        return queryPages(containerName, querySpec, options, itemType).next();
+    }
+
+    /**
+     * Reads a single item by id and {@code options.partitionKey}. The returned page holds exactly one result.
+     */
+    <T> Mono<QueryPage<T>> readItem(String containerName, String id, BackendQueryOptions options, Class<T> itemType);
+
+    /**
+     * Reads many items by id and partition key in as few round trips as possible. Items that do not exist
+     * are omitted from the returned page.
+     */
+    <T> Mono<QueryPage<T>> readMany(String containerName, List<ItemIdentity> items, BackendQueryOptions options,
+                                    Class<T> itemType);
+
+    /**
+     * Reads the change feed of a container from {@code continuationToken} (null = from the beginning) until
+     * it has caught up. Pages hold the latest version of each changed document and the token to resume from;
+     * at least one, possibly empty, page is emitted. Deletions are not reported.
+     */
+    Flux<QueryPage<JsonNode>> readChangeFeed(String containerName, String continuationToken, int maxItemCount);
+}
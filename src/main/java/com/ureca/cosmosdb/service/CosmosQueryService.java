@@ -1,78 +1,435 @@
 package com.ureca.cosmosdb.service;
 
-import com.azure.cosmos.CosmosAsyncClient;
-import com.azure.cosmos.CosmosAsyncContainer;
-import com.azure.cosmos.CosmosAsyncDatabase;
-import com.azure.cosmos.CosmosException;
-import com.azure.cosmos.models.CosmosQueryRequestOptions;
-import com.azure.cosmos.models.FeedResponse;
-import com.azure.cosmos.models.PartitionKey;
 import com.azure.cosmos.models.SqlParameter;
 import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.BatchQueryItem;
+import com.ureca.cosmosdb.model.BatchQueryResponse;
 import com.ureca.cosmosdb.model.CosmosMetadata;
 import com.ureca.cosmosdb.model.ErrorInfo;
+import com.ureca.cosmosdb.model.ItemReference;
 import com.ureca.cosmosdb.model.QueryData;
 import com.ureca.cosmosdb.model.QueryRequest;
 import com.ureca.cosmosdb.model.QueryResponse;
+import com.ureca.cosmosdb.model.QueryStreamEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CosmosQueryService {
 
-    private final CosmosAsyncClient cosmosAsyncClient;
+    private final CosmosQueryBackend backend;
     private final CosmosDbProperties properties;
+    private final QueryResultCache resultCache;
+    private final InFlightQueryCoalescer inFlightCoalescer;
+    private final QueryShapeCache queryShapes;
+    private final QueryMetrics queryMetrics;
+    private final SlowQueryLog slowQueryLog;
+    private final RuRateLimiter ruRateLimiter;
+    private final UpstreamRetry upstreamRetry;
+    private final LocalChangeFeedStore localStore;
 
-    public Mono<QueryResponse> executeQuery(String containerName, QueryRequest request, 
-                                     String partitionKey, Integer maxItemCount, 
-                                     String continuationToken) {
+    public Mono<QueryResponse> executeQuery(String containerName, QueryRequest request,
+                                     String partitionKey, Integer maxItemCount,
+                                     String continuationToken, Boolean passthrough,
+                                     QueryTuning tuning, Integer timeoutMs, String callerId,
+                                     CosmosTarget target) {
         log.debug("Executing query on container: {}, partition key: {}", containerName, partitionKey);
-        
-        CosmosAsyncDatabase database = cosmosAsyncClient.getDatabase(properties.getDefaultConfig().getDatabase());
-        CosmosAsyncContainer container = database.getContainer(containerName);
 
-        // Build SQL query spec with parameters
-        SqlQuerySpec querySpec = buildQuerySpec(request);
+        FieldProjection projection;
+        try {
+            projection = resolveProjection(request);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(buildBadRequestResponse(e.getMessage()));
+        }
+
+        // Budgets, caches and metrics are kept per container of each account and database
+        String scope = target.qualify(containerName);
+        Class<?> itemType = resolveItemType(passthrough);
+        Duration timeout = resolveTimeout(timeoutMs);
+        // A shared upstream call serves callers with different deadlines, so only the configured deadline
+        // caps it and each caller's own is applied on top. A coalesced call is cancelled when its last
+        // caller leaves; a cache load runs on, as its result is kept for the callers that come later
+        boolean shared = resultCache.isEnabled() || inFlightCoalescer.isEnabled();
+        Duration upstreamTimeout = shared ? properties.getConnection().getRequestTimeout() : timeout;
+        BackendQueryOptions options = buildQueryOptions(partitionKey, maxItemCount, continuationToken, tuning)
+                .timeout(upstreamTimeout)
+                .target(target)
+                .build();
+
+        Mono<QueryResponse> query;
+        String shapeTag;
+        QueryShape shape = queryShapes.get(request.getSql());
+        String pointReadId = continuationToken == null ? detectPointRead(request, shape, partitionKey) : null;
+        if (continuationToken == null && localStore.holds(scope)) {
+            // Served from the change-feed copy when it is current and can answer; otherwise from Cosmos DB
+            QueryPage<?> local = pointReadId != null
+                    ? localStore.readItem(scope, pointReadId, partitionKey, itemType)
+                    : localStore.query(scope, buildQuerySpec(request, shape), partitionKey,
+                            options.getMaxItemCount(), itemType);
+            if (local != null) {
+                shapeTag = pointReadId != null ? QueryMetrics.SHAPE_POINT_READ : QueryMetrics.queryShape(partitionKey);
+                return queryMetrics.recordRequest(scope, shapeTag,
+                        Mono.just(project(buildLocalResponse(local), projection)));
+            }
+        }
+        if (pointReadId != null) {
+            // Route "WHERE c.id = @id" with a partition key to a ~1 RU point read
+            shapeTag = QueryMetrics.SHAPE_POINT_READ;
+            query = toResponse(scope, shapeTag, request.getSql(), callerId,
+                    readItemAsQuery(containerName, pointReadId, options, itemType), upstreamTimeout);
+        } else {
+            // Build SQL query spec with parameters
+            SqlQuerySpec querySpec = buildQuerySpec(request, shape);
+
+            // Execute query reactively and return the first page
+            shapeTag = QueryMetrics.queryShape(partitionKey);
+            query = toResponse(scope, shapeTag, request.getSql(), callerId,
+                    backend.queryPage(containerName, querySpec, options, itemType), upstreamTimeout);
+        }
+        query = withRetry(query, upstreamTimeout);
+
+        if (shared) {
+            // The key leaves out the caller: a shared call is admitted once, on the budget of the caller
+            // that started it, as the callers joining it spend no RU
+            QueryKey key = QueryKey.of(scope, request, partitionKey, options.getMaxItemCount(),
+                    continuationToken, itemType == JsonNode.class);
+            if (inFlightCoalescer.isEnabled()) {
+                query = inFlightCoalescer.execute(key, query);
+            }
+            if (resultCache.isEnabled()) {
+                query = resultCache.get(key, query);
+            }
+            query = query.timeout(timeout, Mono.fromSupplier(() -> buildTimeoutResponse(timeout)));
+        }
+        if (projection != null) {
+            // After the cache, so cached and shared responses hold whole documents for every caller
+            query = query.map(response -> project(response, projection));
+        }
+        return queryMetrics.recordRequest(scope, shapeTag, query);
+    }
+
+    /**
+     * Executes independent queries concurrently, at most {@code cosmos.batch.max-parallelism} at a time,
+     * and returns their responses in request order. Each query succeeds or fails on its own.
+     */
+    public Mono<BatchQueryResponse> executeBatch(List<BatchQueryItem> items, Integer timeoutMs, String callerId,
+                                                 CosmosTarget target) {
+        if (items == null || items.isEmpty() || items.size() > properties.getBatch().getMaxItems()) {
+            return Mono.just(BatchQueryResponse.builder()
+                    .ok(false)
+                    .error(ErrorInfo.builder()
+                            .code("BadRequest")
+                            .message("A batch must contain between 1 and " + properties.getBatch().getMaxItems() + " items")
+                            .build())
+                    .build());
+        }
+
+        log.debug("Executing batch of {} queries", items.size());
 
-        // Configure query options
-        CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
-        if (partitionKey != null) {
-            options.setPartitionKey(new PartitionKey(partitionKey));
-            log.debug("Using partition key: {}", partitionKey);
+        // One deadline for the whole batch: each query gets what is left of it when it starts, and queries
+        // that have not started by then are answered with the timeout response
+        Duration timeout = resolveTimeout(timeoutMs);
+        return Flux.defer(() -> {
+                    long deadlineNanos = System.nanoTime() + timeout.toNanos();
+                    return Flux.fromIterable(items)
+                            .flatMapSequential(item -> {
+                                long remainingNanos = deadlineNanos - System.nanoTime();
+                                if (remainingNanos <= 0) {
+                                    return Mono.just(buildTimeoutResponse(timeout));
+                                }
+                                int remainingMs = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+                                return executeBatchItem(item, remainingMs, callerId, target);
+                            }, properties.getBatch().getMaxParallelism());
+                })
+                .collectList()
+                .map(responses -> BatchQueryResponse.builder()
+                        .ok(true)
+                        .count(responses.size())
+                        .results(responses)
+                        .ru(responses.stream()
+                                .filter(response -> response.getCosmos() != null)
+                                .mapToDouble(response -> response.getCosmos().getRu())
+                                .sum())
+                        .build());
+    }
+
+    private Mono<QueryResponse> executeBatchItem(BatchQueryItem item, Integer timeoutMs, String callerId,
+                                                 CosmosTarget target) {
+        if (item == null || item.getContainer() == null || item.getSql() == null) {
+            return Mono.just(buildBadRequestResponse("Each batch item requires container and sql"));
+        }
+
+        return executeQuery(item.getContainer(), new QueryRequest(item.getSql(), item.getParams()),
+                item.getPk(), item.getMaxItemCount(), item.getCt(), item.getPassthrough(), QueryTuning.DEFAULT,
+                timeoutMs, callerId, target);
+    }
+
+    /**
+     * Reads a single item by id and partition key.
+     */
+    public Mono<QueryResponse> readItem(String containerName, String id, String partitionKey, Boolean passthrough,
+                                        Integer timeoutMs, String callerId, CosmosTarget target) {
+        log.debug("Reading item {} from container: {}, partition key: {}", id, containerName, partitionKey);
+
+        String scope = target.qualify(containerName);
+        if (localStore.holds(scope)) {
+            QueryPage<?> local = localStore.readItem(scope, id, partitionKey, resolveItemType(passthrough));
+            if (local != null) {
+                return queryMetrics.recordRequest(scope, QueryMetrics.SHAPE_POINT_READ,
+                        Mono.just(local.getResults().isEmpty()
+                                ? buildErrorResponse(new CosmosBackendException(404, 0,
+                                        "Entity with the specified id does not exist in the system.",
+                                        local.getActivityId(), 0.0, null, null))
+                                : buildLocalResponse(local)));
+            }
+        }
+
+        Duration timeout = resolveTimeout(timeoutMs);
+        BackendQueryOptions options = BackendQueryOptions.builder()
+                .partitionKey(partitionKey)
+                .timeout(timeout)
+                .target(target)
+                .build();
+
+        return queryMetrics.recordRequest(scope, QueryMetrics.SHAPE_POINT_READ, withRetry(
+                toResponse(scope, QueryMetrics.SHAPE_POINT_READ, null, callerId,
+                        backend.readItem(containerName, id, options, resolveItemType(passthrough)), timeout),
+                timeout));
+    }
+
+    /**
+     * Reads many items by id and partition key with the SDK's readMany, which groups them by partition.
+     * Items that do not exist are omitted; the RU in the metadata is the total across all partitions.
+     */
+    public Mono<QueryResponse> readMany(String containerName, List<ItemReference> items, Boolean passthrough,
+                                        Integer timeoutMs, String callerId, CosmosTarget target) {
+        int maxItems = properties.getBatch().getMaxReadManyItems();
+        if (items == null || items.isEmpty() || items.size() > maxItems) {
+            return Mono.just(buildBadRequestResponse("readMany requires between 1 and " + maxItems + " items"));
         }
-        if (maxItemCount != null && maxItemCount > 0) {
-            options.setMaxDegreeOfParallelism(maxItemCount);
+
+        List<ItemIdentity> identities = new ArrayList<>(items.size());
+        for (ItemReference item : items) {
+            if (item == null || item.getId() == null || item.getPk() == null) {
+                return Mono.just(buildBadRequestResponse("Each item requires id and pk"));
+            }
+            identities.add(new ItemIdentity(item.getId(), item.getPk()));
         }
 
-        // Execute query reactively
-        return container.queryItems(querySpec, options, Object.class)
-                .byPage(continuationToken, maxItemCount)
-                .next() // Get the first page
+        log.debug("Reading {} items from container: {}", identities.size(), containerName);
+
+        Duration timeout = resolveTimeout(timeoutMs);
+        BackendQueryOptions options = BackendQueryOptions.builder()
+                .timeout(timeout)
+                .target(target)
+                .build();
+
+        String scope = target.qualify(containerName);
+        return queryMetrics.recordRequest(scope, QueryMetrics.SHAPE_READ_MANY, withRetry(
+                toResponse(scope, QueryMetrics.SHAPE_READ_MANY, null, callerId,
+                        backend.readMany(containerName, identities, options, resolveItemType(passthrough)), timeout),
+                timeout));
+    }
+
+    /**
+     * Applies the request deadline to a backend call and maps its outcome to the response envelope.
+     * Expiry cancels the upstream call and yields the standard 408 Timeout response. {@code scope} is the
+     * container qualified with its target.
+     */
+    private Mono<QueryResponse> toResponse(String scope, String shapeTag, String sql, String callerId,
+                                           Mono<? extends QueryPage<?>> page, Duration timeout) {
+        Mono<? extends QueryPage<?>> upstream = queryMetrics.recordUpstream(scope, shapeTag,
+                slowQueryLog.watch(scope, shapeTag, sql, page.timeout(timeout)));
+        // Time spent waiting for RU budget counts against the deadline as well
+        return ruRateLimiter.admit(scope, shapeTag, callerId, upstream)
+                .timeout(timeout)
                 .map(this::buildSuccessResponse)
-                .onErrorResume(CosmosException.class, this::buildErrorResponseMono)
+                .onErrorResume(TimeoutException.class, e -> Mono.just(buildTimeoutResponse(timeout)))
+                .onErrorResume(CosmosBackendException.class, this::buildErrorResponseMono)
                 .onErrorResume(Exception.class, this::buildGenericErrorResponseMono);
     }
 
-    private QueryResponse buildSuccessResponse(FeedResponse<Object> feedResponse) {
-        List<Object> results = new ArrayList<>();
-        feedResponse.getResults().forEach(results::add);
+    /**
+     * Retries throttled and transient failures within the request deadline. Each attempt already has its
+     * own deadline, so the whole sequence is bounded again to keep it within the caller's.
+     */
+    private Mono<QueryResponse> withRetry(Mono<QueryResponse> attempt, Duration timeout) {
+        if (!upstreamRetry.isEnabled()) {
+            return attempt;
+        }
+        return upstreamRetry.execute(attempt, timeout)
+                .timeout(timeout, Mono.fromSupplier(() -> buildTimeoutResponse(timeout)));
+    }
+
+    /**
+     * Point read issued for a query: a missing item is an empty result set rather than a 404.
+     */
+    private <T> Mono<QueryPage<T>> readItemAsQuery(String containerName, String id, BackendQueryOptions options,
+                                                   Class<T> itemType) {
+        return backend.readItem(containerName, id, options, itemType)
+                .onErrorResume(CosmosBackendException.class, e -> isItemNotFound(e)
+                        ? Mono.just(QueryPage.<T>builder()
+                                .results(List.of())
+                                .requestCharge(e.getRequestCharge())
+                                .activityId(e.getActivityId())
+                                .build())
+                        : Mono.error(e));
+    }
+
+    /**
+     * Query options with page size and cross-partition knobs resolved against the configured defaults and limits.
+     */
+    private BackendQueryOptions.BackendQueryOptionsBuilder buildQueryOptions(String partitionKey, Integer maxItemCount,
+                                                                             String continuationToken, QueryTuning tuning) {
+        CosmosDbProperties.Query settings = properties.getQuery();
+        return BackendQueryOptions.builder()
+                .partitionKey(partitionKey)
+                .maxItemCount(clamp(maxItemCount != null && maxItemCount > 0 ? maxItemCount : settings.getDefaultMaxItemCount(),
+                        settings.getMaxItemCountLimit()))
+                .continuationToken(continuationToken)
+                .maxDegreeOfParallelism(clamp(tuning.maxDegreeOfParallelism() != null
+                                ? tuning.maxDegreeOfParallelism() : settings.getDefaultMaxDegreeOfParallelism(),
+                        settings.getMaxDegreeOfParallelismLimit()))
+                .maxBufferedItemCount(clamp(tuning.maxBufferedItemCount() != null
+                                ? tuning.maxBufferedItemCount() : settings.getDefaultMaxBufferedItemCount(),
+                        settings.getMaxBufferedItemCountLimit()));
+    }
+
+    private int resolvePrefetchPages(Integer requested) {
+        CosmosDbProperties.Query settings = properties.getQuery();
+        int prefetchPages = requested != null ? requested : settings.getDefaultPrefetchPages();
+        return Math.max(1, Math.min(prefetchPages, settings.getMaxPrefetchPages()));
+    }
+
+    /**
+     * Caps a value at {@code limit}; negative values ("unbounded" / "let the SDK decide") are capped too.
+     */
+    private static Integer clamp(Integer value, int limit) {
+        if (value == null) {
+            return null;
+        }
+        return value < 0 || value > limit ? limit : value;
+    }
+
+    /**
+     * The caller's X-Timeout-Ms, capped at cosmos.connection.requestTimeout, which is also the default.
+     */
+    private Duration resolveTimeout(Integer timeoutMs) {
+        Duration maxTimeout = properties.getConnection().getRequestTimeout();
+        if (timeoutMs == null || timeoutMs <= 0) {
+            return maxTimeout;
+        }
+        Duration requested = Duration.ofMillis(timeoutMs);
+        return requested.compareTo(maxTimeout) < 0 ? requested : maxTimeout;
+    }
+
+    /**
+     * Streams every page of a query, stopping after the page on which {@code maxItems} or {@code maxRu}
+     * is reached. Limits are checked at page boundaries so the final continuation token resumes exactly
+     * where the stream stopped. The stream ends with an {@code end} event carrying the totals, or with an
+     * {@code error} event if a page fails.
+     */
+    public Flux<QueryStreamEvent> streamQuery(String containerName, QueryRequest request,
+                                              String partitionKey, Integer maxItemCount,
+                                              String continuationToken, Boolean passthrough,
+                                              QueryTuning tuning, Integer maxItems, Double maxRu,
+                                              String callerId, CosmosTarget target) {
+        log.debug("Streaming query on container: {}, partition key: {}", containerName, partitionKey);
+
+        FieldProjection projection;
+        try {
+            projection = resolveProjection(request);
+        } catch (IllegalArgumentException e) {
+            return Flux.just(buildErrorEvent(new StreamTotals(continuationToken), buildBadRequestResponse(e.getMessage())));
+        }
+
+        SqlQuerySpec querySpec = buildQuerySpec(request, queryShapes.get(request.getSql()));
+
+        BackendQueryOptions options = buildQueryOptions(partitionKey, maxItemCount, continuationToken, tuning)
+                .target(target)
+                .build();
+        String scope = target.qualify(containerName);
+        int prefetchPages = resolvePrefetchPages(tuning.prefetchPages());
+
+        return Flux.defer(() -> {
+            StreamTotals totals = new StreamTotals(continuationToken);
+            Flux<? extends QueryPage<?>> pages = backend.queryPages(containerName, querySpec, options,
+                    resolveItemType(passthrough));
+            String shapeTag = QueryMetrics.queryShape(partitionKey);
+            Flux<? extends QueryPage<?>> upstream = queryMetrics.recordUpstreamPages(scope, shapeTag,
+                    slowQueryLog.watchPages(scope, shapeTag, request.getSql(), pages));
+            return ruRateLimiter.admitPages(scope, shapeTag, callerId, upstream)
+                    // Fetch at most prefetchPages ahead of what the client has consumed
+                    .limitRate(prefetchPages)
+                    .map(page -> buildPageEvent(totals.add(page), page, projection))
+                    .takeUntil(event -> totals.limitReached(maxItems, maxRu))
+                    .concatWith(Mono.fromSupplier(() -> buildEndEvent(totals)))
+                    .onErrorResume(CosmosBackendException.class, e -> Mono.just(buildErrorEvent(totals, buildErrorResponse(e))))
+                    .onErrorResume(Exception.class, e -> Mono.just(buildErrorEvent(totals, buildGenericErrorResponse(e))));
+        });
+    }
+
+    private QueryStreamEvent buildPageEvent(int pageIndex, QueryPage<?> page, FieldProjection projection) {
+        QueryResponse response = project(buildSuccessResponse(page), projection);
+        return QueryStreamEvent.builder()
+                .type(QueryStreamEvent.TYPE_PAGE)
+                .page(pageIndex)
+                .data(response.getData())
+                .cosmos(response.getCosmos())
+                .build();
+    }
+
+    private QueryStreamEvent buildEndEvent(StreamTotals totals) {
+        log.debug("Query stream completed. Pages: {}, Results: {}, RU: {}", totals.pages, totals.count, totals.ru);
+
+        return QueryStreamEvent.builder()
+                .type(QueryStreamEvent.TYPE_END)
+                .page(totals.pages)
+                .data(totals.toData())
+                .cosmos(CosmosMetadata.builder()
+                        .ru(totals.ru)
+                        .statusCode(200)
+                        .activityId(totals.activityId)
+                        .subStatus(0)
+                        .build())
+                .build();
+    }
+
+    private QueryStreamEvent buildErrorEvent(StreamTotals totals, QueryResponse errorResponse) {
+        return QueryStreamEvent.builder()
+                .type(QueryStreamEvent.TYPE_ERROR)
+                .page(totals.pages)
+                .data(totals.toData())
+                .error(errorResponse.getError())
+                .cosmos(errorResponse.getCosmos())
+                .build();
+    }
+
+    QueryResponse buildSuccessResponse(QueryPage<?> page) {
+        // Results are handed to the response as-is; no per-request copy
+        List<?> results = page.getResults();
 
         // Extract diagnostics
-        double requestCharge = feedResponse.getRequestCharge();
-        String activityId = feedResponse.getActivityId();
-        String newContinuationToken = feedResponse.getContinuationToken();
+        double requestCharge = page.getRequestCharge();
+        String activityId = page.getActivityId();
+        String newContinuationToken = page.getContinuationToken();
 
-        log.info("Query executed successfully. Results: {}, RU: {}, ActivityId: {}", 
+        log.debug("Query executed successfully. Results: {}, RU: {}, ActivityId: {}", 
                 results.size(), requestCharge, activityId);
 
         // Build response
@@ -82,41 +439,105 @@ public class CosmosQueryService {
                 .continuationToken(newContinuationToken)
                 .build();
 
-        CosmosMetadata metadata = CosmosMetadata.builder()
+        CosmosMetadata.CosmosMetadataBuilder metadata = CosmosMetadata.builder()
                 .ru(requestCharge)
                 .statusCode(200)
                 .activityId(activityId)
-                .subStatus(0)
-                .build();
+                .subStatus(0);
+        if (page.isHedged()) {
+            metadata.hedged(true).hedgeWon(page.isHedgeWon());
+        }
 
         return QueryResponse.builder()
                 .ok(true)
                 .data(data)
-                .cosmos(metadata)
+                .cosmos(metadata.build())
                 .build();
     }
 
-    private SqlQuerySpec buildQuerySpec(QueryRequest request) {
-        List<SqlParameter> parameters = new ArrayList<>();
-        
-        if (request.getParams() != null && !request.getParams().isEmpty()) {
-            for (Map.Entry<String, Object> entry : request.getParams().entrySet()) {
-                // Add @ prefix if not present
-                String paramName = entry.getKey().startsWith("@") ? entry.getKey() : "@" + entry.getKey();
-                parameters.add(new SqlParameter(paramName, entry.getValue()));
-            }
+    private QueryResponse buildLocalResponse(QueryPage<?> page) {
+        QueryResponse response = buildSuccessResponse(page);
+        return response.toBuilder()
+                .cosmos(response.getCosmos().toBuilder().localStore(true).build())
+                .build();
+    }
+
+    private FieldProjection resolveProjection(QueryRequest request) {
+        boolean stripSystemProperties = request.getStripSystemProperties() != null
+                ? request.getStripSystemProperties() : properties.getQuery().isStripSystemProperties();
+        return FieldProjection.of(request.getFields(), request.getExcludeFields(), stripSystemProperties);
+    }
+
+    /**
+     * Applies the projection to the results of a successful response. The response itself is not
+     * modified, since it may be cached or shared with other callers.
+     */
+    private static QueryResponse project(QueryResponse response, FieldProjection projection) {
+        QueryData data = response.getData();
+        if (projection == null || data == null || data.getResults() == null) {
+            return response;
+        }
+        return response.toBuilder()
+                .data(QueryData.builder()
+                        .count(data.getCount())
+                        .results(projection.apply(data.getResults()))
+                        .continuationToken(data.getContinuationToken())
+                        .build())
+                .build();
+    }
+
+    /**
+     * In passthrough mode items are fetched as {@link JsonNode} trees, which the SDK hands over without
+     * converting them to maps and Jackson writes directly into the response buffers.
+     */
+    private Class<?> resolveItemType(Boolean passthrough) {
+        boolean rawItems = passthrough != null ? passthrough : properties.getQuery().isPassthrough();
+        return rawItems ? JsonNode.class : Object.class;
+    }
+
+    /**
+     * Returns the id to read if the query is {@code SELECT * FROM c WHERE c.id = @param} with a partition key,
+     * or {@code null} if it has to go through the query pipeline.
+     */
+    String detectPointRead(QueryRequest request, QueryShape shape, String partitionKey) {
+        String paramName = shape.pointReadParameter();
+        if (paramName == null || partitionKey == null || !properties.getQuery().isPointReadDetection()
+                || request.getParams() == null) {
+            return null;
+        }
+
+        Object id = request.getParams().containsKey(paramName)
+                ? request.getParams().get(paramName)
+                : request.getParams().get("@" + paramName);
+        return id instanceof String ? (String) id : null;
+    }
+
+    private static boolean isItemNotFound(CosmosBackendException e) {
+        return e.getStatusCode() == 404 && e.getSubStatusCode() == 0;
+    }
+
+    SqlQuerySpec buildQuerySpec(QueryRequest request, QueryShape shape) {
+        Map<String, Object> params = request.getParams();
+        if (params == null || params.isEmpty()) {
+            return new SqlQuerySpec(request.getSql());
+        }
+
+        List<SqlParameter> parameters = new ArrayList<>(params.size());
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            // Add @ prefix if not present (resolved once per SQL shape)
+            parameters.add(new SqlParameter(shape.parameterName(entry.getKey()), entry.getValue()));
         }
 
         return new SqlQuerySpec(request.getSql(), parameters);
     }
 
-    private Mono<QueryResponse> buildErrorResponseMono(CosmosException e) {
+    private Mono<QueryResponse> buildErrorResponseMono(CosmosBackendException e) {
         log.error("Cosmos DB error: {}, Status: {}, SubStatus: {}, ActivityId: {}", 
                 e.getMessage(), e.getStatusCode(), e.getSubStatusCode(), e.getActivityId());
         return Mono.just(buildErrorResponse(e));
     }
 
-    private QueryResponse buildErrorResponse(CosmosException e) {
+    private QueryResponse buildErrorResponse(CosmosBackendException e) {
         String errorCode = determineErrorCode(e.getStatusCode());
         
         Map<String, Object> details = new HashMap<>();
@@ -149,6 +570,48 @@ public class CosmosQueryService {
                 .build();
     }
 
+    private QueryResponse buildBadRequestResponse(String message) {
+        ErrorInfo errorInfo = ErrorInfo.builder()
+                .code("BadRequest")
+                .message(message)
+                .build();
+
+        CosmosMetadata metadata = CosmosMetadata.builder()
+                .ru(0.0)
+                .statusCode(400)
+                .activityId("N/A")
+                .subStatus(0)
+                .build();
+
+        return QueryResponse.builder()
+                .ok(false)
+                .error(errorInfo)
+                .cosmos(metadata)
+                .build();
+    }
+
+    private QueryResponse buildTimeoutResponse(Duration timeout) {
+        log.warn("Request did not complete within {} ms", timeout.toMillis());
+
+        ErrorInfo errorInfo = ErrorInfo.builder()
+                .code("Timeout")
+                .message("Request did not complete within " + timeout.toMillis() + " ms")
+                .build();
+
+        CosmosMetadata metadata = CosmosMetadata.builder()
+                .ru(0.0)
+                .statusCode(408)
+                .activityId("N/A")
+                .subStatus(0)
+                .build();
+
+        return QueryResponse.builder()
+                .ok(false)
+                .error(errorInfo)
+                .cosmos(metadata)
+                .build();
+    }
+
     private Mono<QueryResponse> buildGenericErrorResponseMono(Exception e) {
         return Mono.just(buildGenericErrorResponse(e));
     }
@@ -184,4 +647,38 @@ public class CosmosQueryService {
             default -> "UpstreamError";
         };
     }
+
+    /**
+     * Running totals of one streamed query; confined to a single subscription.
+     */
+    private static final class StreamTotals {
+        private int pages;
+        private int count;
+        private double ru;
+        private String activityId;
+        private String continuationToken;
+
+        private StreamTotals(String continuationToken) {
+            this.continuationToken = continuationToken;
+        }
+
+        private int add(QueryPage<?> page) {
+            count += page.getResults().size();
+            ru += page.getRequestCharge();
+            activityId = page.getActivityId();
+            continuationToken = page.getContinuationToken();
+            return pages++;
+        }
+
+        private boolean limitReached(Integer maxItems, Double maxRu) {
+            return (maxItems != null && count >= maxItems) || (maxRu != null && ru >= maxRu);
+        }
+
+        private QueryData toData() {
+            return QueryData.builder()
+                    .count(count)
+                    .continuationToken(continuationToken)
+                    .build();
+        }
+    }
 }
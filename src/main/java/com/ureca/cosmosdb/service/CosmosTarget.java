@@ -0,0 +1,45 @@
+package com.ureca.cosmosdb.service;
+
+/**
+ * Account and database a request is routed to. A null part means the configured default: the account
+ * in {@code cosmos.endpoint}, and the database of the account ({@code cosmos.default.database} for the
+ * default account).
+ *
+ * @param account  name of an account under {@code cosmos.routing.accounts}
+ * @param database database name
+ */
+public record CosmosTarget(String account, String database) {
+
+    public static final CosmosTarget DEFAULT = new CosmosTarget(null, null);
+
+    /**
+     * Target from the routing headers; absent or blank headers select the default.
+     */
+    public static CosmosTarget of(String account, String database) {
+        String accountName = account != null && !account.isBlank() ? account : null;
+        String databaseName = database != null && !database.isBlank() ? database : null;
+        return accountName == null && databaseName == null ? DEFAULT : new CosmosTarget(accountName, databaseName);
+    }
+
+    public boolean isDefault() {
+        return account == null && database == null;
+    }
+
+    /**
+     * Name that identifies {@code container} across targets, for cache keys, budgets and metrics. Containers
+     * of the default target keep their plain name.
+     */
+    public String qualify(String container) {
+        if (isDefault()) {
+            return container;
+        }
+        return (account != null ? account : "") + '/' + (database != null ? database : "") + '/' + container;
+    }
+
+    /**
+     * The plain container name of a name returned by {@link #qualify}. Container names cannot contain '/'.
+     */
+    public static String containerName(String qualified) {
+        return qualified.substring(qualified.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,201 @@
+package com.ureca.cosmosdb.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.filter.FilteringGeneratorDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which fields of each result document are written to the response: only the listed {@code fields},
+ * everything but the {@code excludeFields}, and optionally without the system properties.
+ * <p>
+ * Nothing is copied or rebuilt. The results are wrapped so that Jackson writes each document through a
+ * {@link FilteringGeneratorDelegate}, which drops the unwanted tokens on their way to the output buffer.
+ * Paths are dot-separated property names, e.g. {@code address.city}, and reach into arrays of objects.
+ */
+final class FieldProjection {
+
+    static final Set<String> SYSTEM_PROPERTIES = Set.of("_rid", "_self", "_etag", "_attachments", "_ts");
+
+    private final TokenFilter filter;
+
+    private FieldProjection(TokenFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * The projection for a request, or null if whole documents are returned.
+     *
+     * @throws IllegalArgumentException if both lists are given or a path is empty
+     */
+    static FieldProjection of(List<String> fields, List<String> excludeFields, boolean stripSystemProperties) {
+        boolean include = fields != null && !fields.isEmpty();
+        boolean exclude = excludeFields != null && !excludeFields.isEmpty();
+        if (include && exclude) {
+            throw new IllegalArgumentException("fields and excludeFields cannot be combined");
+        }
+        if (include) {
+            // System properties are only returned if listed
+            return new FieldProjection(new IncludeFilter(PathNode.parse(fields)));
+        }
+        if (exclude || stripSystemProperties) {
+            return new FieldProjection(new ExcludeFilter(PathNode.parse(exclude ? excludeFields : List.of()),
+                    stripSystemProperties));
+        }
+        return null;
+    }
+
+    /**
+     * The same results, serialized through this projection.
+     */
+    List<?> apply(List<?> results) {
+        return new ProjectedResults(results, filter);
+    }
+
+    /**
+     * One level of the requested paths. A leaf covers the whole value at its path.
+     */
+    private static final class PathNode {
+        private final Map<String, PathNode> children = new HashMap<>();
+        private boolean leaf;
+
+        static PathNode parse(List<String> paths) {
+            PathNode root = new PathNode();
+            for (String path : paths) {
+                if (path == null || path.isBlank()) {
+                    throw new IllegalArgumentException("Field paths must not be empty");
+                }
+                PathNode node = root;
+                for (String name : path.split("\\.", -1)) {
+                    if (name.isEmpty()) {
+                        throw new IllegalArgumentException("Invalid field path: " + path);
+                    }
+                    node = node.children.computeIfAbsent(name, ignored -> new PathNode());
+                }
+                node.leaf = true;
+            }
+            return root;
+        }
+    }
+
+    /**
+     * Writes the listed paths and the objects leading to them.
+     */
+    private static final class IncludeFilter extends TokenFilter {
+        private final PathNode node;
+
+        IncludeFilter(PathNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            PathNode child = node.children.get(name);
+            if (child == null) {
+                return null;
+            }
+            return child.leaf ? TokenFilter.INCLUDE_ALL : new IncludeFilter(child);
+        }
+
+        @Override
+        public boolean includeEmptyObject(boolean contentsFiltered) {
+            // Keeps every document in the results, even one with none of the fields
+            return true;
+        }
+
+        @Override
+        public boolean includeEmptyArray(boolean contentsFiltered) {
+            return true;
+        }
+    }
+
+    /**
+     * Writes everything except the listed paths and, at the top level, the system properties.
+     */
+    private static final class ExcludeFilter extends TokenFilter {
+        private final PathNode node;
+        private final boolean stripSystemProperties;
+
+        ExcludeFilter(PathNode node, boolean stripSystemProperties) {
+            this.node = node;
+            this.stripSystemProperties = stripSystemProperties;
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            PathNode child = node.children.get(name);
+            if (child == null) {
+                return stripSystemProperties && SYSTEM_PROPERTIES.contains(name) ? null : TokenFilter.INCLUDE_ALL;
+            }
+            return child.leaf ? null : new ExcludeFilter(child, false);
+        }
+
+        @Override
+        public boolean includeEmptyObject(boolean contentsFiltered) {
+            return true;
+        }
+
+        @Override
+        public boolean includeEmptyArray(boolean contentsFiltered) {
+            return true;
+        }
+    }
+
+    /**
+     * Read-only view of the results that Jackson serializes through the filter. Its elements are the
+     * unfiltered documents.
+     */
+    @JsonSerialize(using = ProjectedResultsSerializer.class)
+    static final class ProjectedResults extends AbstractList<Object> {
+        private final List<?> results;
+        private final TokenFilter filter;
+
+        ProjectedResults(List<?> results, TokenFilter filter) {
+            this.results = results;
+            this.filter = filter;
+        }
+
+        @Override
+        public Object get(int index) {
+            return results.get(index);
+        }
+
+        @Override
+        public int size() {
+            return results.size();
+        }
+    }
+
+    static final class ProjectedResultsSerializer extends StdSerializer<ProjectedResults> {
+
+        ProjectedResultsSerializer() {
+            super(ProjectedResults.class);
+        }
+
+        @Override
+        public void serialize(ProjectedResults value, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            // Each document is a root value of the delegate; the array around them is written unfiltered
+            JsonGenerator filtered = new FilteringGeneratorDelegate(gen, value.filter,
+                    TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+            gen.writeStartArray(value, value.size());
+            for (Object item : value.results) {
+                if (item == null) {
+                    gen.writeNull();
+                } else {
+                    provider.defaultSerializeValue(item, filtered);
+                }
+            }
+            gen.writeEndArray();
+        }
+    }
+}
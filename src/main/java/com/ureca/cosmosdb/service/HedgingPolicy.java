@@ -0,0 +1,163 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.ThresholdBasedAvailabilityStrategy;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Decides which calls the SDK may hedge to other preferred regions, and tells from the diagnostics of a
+ * response whether a hedge was sent and whether it won.
+ * <p>
+ * Hedging is left to the SDK's {@link ThresholdBasedAvailabilityStrategy}. What the sidecar adds is a
+ * budget: every call deposits {@code budget-ratio} of a hedge, and every hedge-enabled call reserves
+ * one up front and gets it back when it completes without a hedge being sent. At most that fraction of
+ * calls therefore costs the extra RU, however many are in flight at once. Calls are not hedge-enabled
+ * while the budget is empty.
+ */
+@Slf4j
+class HedgingPolicy {
+
+    private static final double MAX_BALANCE = 10.0;
+
+    private final CosmosDbProperties.Hedging settings;
+    private final boolean active;
+    private final String primaryRegion;
+    private final ThresholdBasedAvailabilityStrategy strategy;
+    private final Counter budgetExhausted;
+    private double balance = MAX_BALANCE;
+
+    HedgingPolicy(CosmosDbProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getHedging();
+        List<String> preferredRegions = properties.getConnection().getPreferredRegions();
+        this.active = settings.isEnabled() && preferredRegions.size() > 1;
+        this.primaryRegion = !preferredRegions.isEmpty() ? preferredRegions.get(0).toLowerCase(Locale.ROOT) : null;
+        this.strategy = new ThresholdBasedAvailabilityStrategy(settings.getThreshold(), settings.getThresholdStep());
+        this.budgetExhausted = Counter.builder("sidecar.hedge.budget.exhausted")
+                .description("Calls not hedge-enabled because the hedging budget was exhausted")
+                .register(meterRegistry);
+
+        if (settings.isEnabled() && !active) {
+            log.warn("Hedging is enabled but needs at least two cosmos.connection.preferredRegions; it stays off");
+        }
+    }
+
+    ThresholdBasedAvailabilityStrategy strategy() {
+        return strategy;
+    }
+
+    /**
+     * The hedge reserved for a call with this deadline, or null if it may not be hedged. The strategy
+     * rides on the end-to-end policy, so calls without a deadline, or with one shorter than the
+     * threshold, are not. Eligible calls take a deposit either way.
+     */
+    synchronized Hedge admit(Duration timeout) {
+        if (!active || timeout == null || timeout.compareTo(settings.getThreshold()) <= 0) {
+            return null;
+        }
+        balance = Math.min(MAX_BALANCE, balance + settings.getBudgetRatio());
+        if (balance < 1.0) {
+            budgetExhausted.increment();
+            return null;
+        }
+        balance -= 1.0;
+        return new Hedge();
+    }
+
+    /**
+     * Runs the call built by {@code call} with a hedge admitted when it is subscribed and settled however
+     * it ends. A call that is never subscribed holds nothing, and every resubscription is admitted afresh.
+     */
+    <T> Mono<T> hedged(Duration timeout, Function<Hedge, Mono<T>> call) {
+        return Mono.defer(() -> {
+            Hedge hedge = admit(timeout);
+            return hedge != null ? settled(hedge, call).doFinally(signal -> hedge.settle()) : call.apply(null);
+        });
+    }
+
+    /**
+     * As {@link #hedged(Duration, Function)}, for a call of several pages.
+     */
+    <T> Flux<T> hedgedPages(Duration timeout, Function<Hedge, Flux<T>> call) {
+        return Flux.defer(() -> {
+            Hedge hedge = admit(timeout);
+            return hedge != null ? settled(hedge, call).doFinally(signal -> hedge.settle()) : call.apply(null);
+        });
+    }
+
+    private static <P> P settled(Hedge hedge, Function<Hedge, P> call) {
+        try {
+            return call.apply(hedge);
+        } catch (RuntimeException e) {
+            hedge.settle();
+            throw e;
+        }
+    }
+
+    private synchronized void refund() {
+        balance = Math.min(MAX_BALANCE, balance + 1.0);
+    }
+
+    /**
+     * Classifies the outcome of a hedge-enabled request from its diagnostics.
+     */
+    private Outcome outcome(CosmosDiagnostics diagnostics) {
+        CosmosDiagnosticsContext context = diagnostics != null ? diagnostics.getDiagnosticsContext() : null;
+        if (context == null || context.getContactedRegionNames().size() < 2) {
+            return Outcome.NOT_HEDGED;
+        }
+        // The response carries the diagnostics of the request that won; the context covers all of them
+        Set<String> winningRegions = diagnostics.getContactedRegionNames();
+        boolean primaryWon = primaryRegion != null && winningRegions.stream()
+                .anyMatch(region -> region.toLowerCase(Locale.ROOT).equals(primaryRegion));
+        return primaryWon ? Outcome.HEDGE_LOST : Outcome.HEDGE_WON;
+    }
+
+    /**
+     * One hedge of the budget, held by a hedge-enabled call from admission until it is settled. A call
+     * of several pages is charged once if any of them was hedged.
+     */
+    final class Hedge {
+        private final AtomicBoolean sent = new AtomicBoolean();
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Hedge() {
+        }
+
+        /**
+         * Classifies the outcome of one response or failure of the call.
+         */
+        Outcome observe(CosmosDiagnostics diagnostics) {
+            Outcome outcome = outcome(diagnostics);
+            if (outcome != Outcome.NOT_HEDGED) {
+                sent.set(true);
+            }
+            return outcome;
+        }
+
+        /**
+         * Returns the reservation to the budget unless a hedge was sent. Only the first call counts.
+         */
+        void settle() {
+            if (settled.compareAndSet(false, true) && !sent.get()) {
+                refund();
+            }
+        }
+    }
+
+    enum Outcome {
+        NOT_HEDGED, HEDGE_WON, HEDGE_LOST
+    }
+}
@@ -0,0 +1,117 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-flight execution of identical queries: while a query is in flight, further identical requests
+ * subscribe to the same upstream call instead of issuing their own.
+ * <p>
+ * The upstream call is reference-counted. It keeps running while at least one caller waits for it, so a
+ * caller that goes away does not fail the others, and it is cancelled when the last caller goes away.
+ * Each caller leaves at its own deadline, so the call runs until the longest deadline among the callers
+ * attached to it. The entry is removed as soon as the call terminates or is cancelled, so nothing is
+ * served after it completes.
+ */
+@Component
+public class InFlightQueryCoalescer {
+
+    private final boolean enabled;
+    private final Map<QueryKey, SharedCall> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter collapsed;
+
+    public InFlightQueryCoalescer(CosmosDbProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.getQuery().isCoalesceInFlight();
+        this.executed = Counter.builder("sidecar.inflight.requests")
+                .description("Queries that started an upstream call")
+                .register(meterRegistry);
+        this.collapsed = Counter.builder("sidecar.inflight.collapsed")
+                .description("Queries that joined an identical in-flight upstream call")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("sidecar.inflight.active", Tags.empty(), inFlight);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<QueryResponse> execute(QueryKey key, Mono<QueryResponse> upstream) {
+        return Mono.defer(() -> {
+            while (true) {
+                SharedCall existing = inFlight.get(key);
+                if (existing != null && existing.join()) {
+                    collapsed.increment();
+                    return existing.result();
+                }
+
+                // Joined before it is published, so it cannot be cancelled before its first caller subscribes
+                SharedCall call = new SharedCall(key);
+                call.join();
+                boolean published = existing == null
+                        ? inFlight.putIfAbsent(key, call) == null
+                        : inFlight.replace(key, existing, call);
+                if (published) {
+                    executed.increment();
+                    call.start(upstream);
+                    return call.result();
+                }
+            }
+        });
+    }
+
+    /**
+     * One upstream call and the number of callers waiting for it; -1 once it has been cancelled.
+     */
+    private final class SharedCall {
+        private final QueryKey key;
+        private final Sinks.One<QueryResponse> response = Sinks.one();
+        private final AtomicInteger callers = new AtomicInteger();
+        private volatile Disposable subscription;
+
+        private SharedCall(QueryKey key) {
+            this.key = key;
+        }
+
+        boolean join() {
+            while (true) {
+                int count = callers.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (callers.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void start(Mono<QueryResponse> upstream) {
+            // Only this call's own entry is removed; a late doFinally must not evict a newer call for the key
+            subscription = upstream
+                    .doFinally(signal -> inFlight.remove(key, this))
+                    .subscribe(response::tryEmitValue, response::tryEmitError, response::tryEmitEmpty);
+        }
+
+        Mono<QueryResponse> result() {
+            return response.asMono().doOnCancel(this::leave);
+        }
+
+        private void leave() {
+            if (callers.decrementAndGet() == 0 && callers.compareAndSet(0, -1)) {
+                inFlight.remove(key, this);
+                subscription.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-process stand-in for Cosmos DB that serves JSON documents from memory.
+ * <p>
+ * Intended for load and latency testing without a live account: it emits RU charges proportional
+ * to the returned payload, continuation tokens, injected 429s with a retry-after and configurable
+ * latency. Only {@code SELECT * FROM c [WHERE c.path = value AND ...]} queries are understood.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cosmos", name = "backend", havingValue = "IN_MEMORY")
+@Slf4j
+public class InMemoryCosmosQueryBackend implements CosmosQueryBackend {
+
+    private static final String CONTINUATION_PREFIX = "mem:";
+    private static final String CHANGE_FEED_PREFIX = "memcf:";
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    private final CosmosDbProperties.InMemory settings;
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+    private final Map<String, ConcurrentSkipListMap<String, StoredItem>> containers = new ConcurrentHashMap<>();
+    // Orders writes for the change feed, like the _lsn of a Cosmos DB partition
+    private final AtomicLong sequence = new AtomicLong();
+
+    public InMemoryCosmosQueryBackend(CosmosDbProperties properties, ObjectMapper objectMapper,
+                                      ResourceLoader resourceLoader) {
+        this.settings = properties.getInMemory();
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+    }
+
+    @PostConstruct
+    void loadSeed() throws IOException {
+        String location = settings.getSeedLocation();
+        if (location == null || location.isBlank()) {
+            log.info("In-memory Cosmos DB backend started without seed data");
+            return;
+        }
+
+        // Seed format: { "<container>": [ { "id": "...", ... }, ... ], ... }
+        try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+            JsonNode root = objectMapper.readTree(in);
+            root.fields().forEachRemaining(entry ->
+                    entry.getValue().forEach(document -> upsertItem(entry.getKey(), (ObjectNode) document)));
+        }
+        log.info("In-memory Cosmos DB backend seeded from {} with {} containers", location, containers.size());
+    }
+
+    /**
+     * Inserts or replaces a document. The container is created on first use.
+     */
+    public void upsertItem(String containerName, ObjectNode document) {
+        JsonNode id = document.get("id");
+        if (id == null || !id.isTextual()) {
+            throw new IllegalArgumentException("Document in container " + containerName + " must have a string id");
+        }
+
+        int sizeBytes;
+        try {
+            sizeBytes = objectMapper.writeValueAsBytes(document).length;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Document is not serializable", e);
+        }
+
+        containers.computeIfAbsent(containerName, name -> new ConcurrentSkipListMap<>())
+                .put(key(partitionKeyOf(document), id.asText()), new StoredItem(document, sizeBytes, sequence.incrementAndGet()));
+    }
+
+    /**
+     * Removes all containers and documents.
+     */
+    public void clear() {
+        containers.clear();
+    }
+
+    @Override
+    public <T> Flux<QueryPage<T>> queryPages(String containerName, SqlQuerySpec querySpec,
+                                             BackendQueryOptions options, Class<T> itemType) {
+        return Flux.defer(() -> {
+            List<StoredItem> matches = match(containerName, querySpec, options.getPartitionKey());
+            int pageSize = options.getMaxItemCount() != null && options.getMaxItemCount() > 0
+                    ? options.getMaxItemCount()
+                    : settings.getDefaultPageSize();
+            int start = parseContinuation(options.getContinuationToken());
+            int remaining = Math.max(0, matches.size() - start);
+            // Cosmos DB always returns at least one (possibly empty) page
+            int pageCount = Math.max(1, (remaining + pageSize - 1) / pageSize);
+
+            return Flux.range(0, pageCount).concatMap(page -> simulate(() -> {
+                int from = Math.min(start + page * pageSize, matches.size());
+                int to = Math.min(from + pageSize, matches.size());
+                List<StoredItem> slice = matches.subList(from, to);
+                String continuation = to < matches.size() ? CONTINUATION_PREFIX + to : null;
+                return toPage(slice, continuation, settings.getQueryBaseRu() + chargeFor(slice), itemType);
+            }));
+        });
+    }
+
+    @Override
+    public <T> Mono<QueryPage<T>> readItem(String containerName, String id, BackendQueryOptions options,
+                                           Class<T> itemType) {
+        return simulate(() -> {
+            StoredItem item = container(containerName).get(key(options.getPartitionKey(), id));
+            if (item == null) {
+                throw new CosmosBackendException(404, 0,
+                        "Entity with the specified id does not exist in the system.",
+                        newActivityId(), 1.0, null, null);
+            }
+            return toPage(List.of(item), null, Math.max(1.0, chargeFor(List.of(item))), itemType);
+        });
+    }
+
+    @Override
+    public <T> Mono<QueryPage<T>> readMany(String containerName, List<ItemIdentity> items, BackendQueryOptions options,
+                                           Class<T> itemType) {
+        return simulate(() -> {
+            NavigableMap<String, StoredItem> container = container(containerName);
+
+            // Charged like the SDK's readMany: one query per partition, or a point read for a single item
+            Map<String, List<StoredItem>> byPartition = new LinkedHashMap<>();
+            Map<String, Integer> requestedPerPartition = new HashMap<>();
+            for (ItemIdentity identity : items) {
+                requestedPerPartition.merge(identity.partitionKey(), 1, Integer::sum);
+                StoredItem item = container.get(key(identity.partitionKey(), identity.id()));
+                if (item != null) {
+                    byPartition.computeIfAbsent(identity.partitionKey(), pk -> new ArrayList<>()).add(item);
+                }
+            }
+
+            List<StoredItem> found = new ArrayList<>();
+            double requestCharge = 0.0;
+            for (Map.Entry<String, Integer> partition : requestedPerPartition.entrySet()) {
+                List<StoredItem> partitionItems = byPartition.getOrDefault(partition.getKey(), List.of());
+                found.addAll(partitionItems);
+                requestCharge += partition.getValue() == 1
+                        ? Math.max(1.0, chargeFor(partitionItems))
+                        : settings.getQueryBaseRu() + chargeFor(partitionItems);
+            }
+            return toPage(found, null, requestCharge, itemType);
+        });
+    }
+
+    @Override
+    public Flux<QueryPage<JsonNode>> readChangeFeed(String containerName, String continuationToken, int maxItemCount) {
+        return Flux.defer(() -> {
+            long from = parseChangeFeedContinuation(continuationToken);
+            List<StoredItem> changes = new ArrayList<>();
+            for (StoredItem item : container(containerName).values()) {
+                if (item.sequence() > from) {
+                    changes.add(item);
+                }
+            }
+            changes.sort(Comparator.comparingLong(StoredItem::sequence));
+
+            int pageSize = Math.max(1, maxItemCount);
+            int pageCount = Math.max(1, (changes.size() + pageSize - 1) / pageSize);
+            return Flux.range(0, pageCount).concatMap(page -> simulate(() -> {
+                List<StoredItem> slice = changes.subList(Math.min(page * pageSize, changes.size()),
+                        Math.min((page + 1) * pageSize, changes.size()));
+                long last = slice.isEmpty() ? from : slice.get(slice.size() - 1).sequence();
+                return toPage(slice, CHANGE_FEED_PREFIX + last, settings.getQueryBaseRu() + chargeFor(slice),
+                        JsonNode.class);
+            }));
+        });
+    }
+
+    private List<StoredItem> match(String containerName, SqlQuerySpec querySpec, String partitionKey) {
+        Predicate<JsonNode> filter;
+        try {
+            filter = SimpleQueryFilter.parse(querySpec, objectMapper);
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e.getMessage());
+        }
+
+        NavigableMap<String, StoredItem> scope = container(containerName);
+        if (partitionKey != null) {
+            scope = scope.subMap(partitionKey + KEY_SEPARATOR, true,
+                    partitionKey + (char) (KEY_SEPARATOR + 1), false);
+        }
+
+        List<StoredItem> matches = new ArrayList<>();
+        for (StoredItem item : scope.values()) {
+            if (filter.test(item.document())) {
+                matches.add(item);
+            }
+        }
+        return matches;
+    }
+
+    private <T> QueryPage<T> toPage(List<StoredItem> items, String continuationToken, double requestCharge,
+                                    Class<T> itemType) {
+        List<T> results = new ArrayList<>(items.size());
+        for (StoredItem item : items) {
+            results.add(convert(item.document(), itemType));
+        }
+        return QueryPage.<T>builder()
+                .results(results)
+                .requestCharge(Math.round(requestCharge * 100) / 100.0)
+                .activityId(newActivityId())
+                .continuationToken(continuationToken)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(ObjectNode document, Class<T> itemType) {
+        // Object.class is materialized as maps, mirroring what the SDK does
+        if (itemType != Object.class && itemType.isInstance(document)) {
+            return (T) document;
+        }
+        return objectMapper.convertValue(document, itemType);
+    }
+
+    private double chargeFor(List<StoredItem> items) {
+        long bytes = 0;
+        for (StoredItem item : items) {
+            bytes += item.sizeBytes();
+        }
+        return settings.getRuPerKb() * bytes / 1024.0;
+    }
+
+    private <T> Mono<T> simulate(Supplier<T> operation) {
+        Mono<T> result = Mono.defer(() -> {
+            double throttleRate = settings.getThrottleRate();
+            if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+                return Mono.error(new CosmosBackendException(429, 3200,
+                        "Request rate is large. More Request Units may be needed, so no changes were made.",
+                        newActivityId(), 0.0, settings.getThrottleRetryAfter(), null));
+            }
+            return Mono.fromSupplier(operation);
+        });
+
+        Duration delay = nextLatency();
+        return delay.isZero() ? result : result.delaySubscription(delay);
+    }
+
+    private Duration nextLatency() {
+        Duration latency = settings.getLatency();
+        long jitterNanos = settings.getLatencyJitter().toNanos();
+        if (jitterNanos > 0) {
+            latency = latency.plusNanos(ThreadLocalRandom.current().nextLong(jitterNanos));
+        }
+        return latency;
+    }
+
+    private NavigableMap<String, StoredItem> container(String containerName) {
+        NavigableMap<String, StoredItem> container = containers.get(containerName);
+        if (container == null) {
+            // Sub-status 1003 is what Cosmos DB returns for a missing container
+            throw new CosmosBackendException(404, 1003, "Resource Not Found. Container " + containerName
+                    + " does not exist", newActivityId(), 0.0, null, null);
+        }
+        return container;
+    }
+
+    private int parseContinuation(String continuationToken) {
+        if (continuationToken == null) {
+            return 0;
+        }
+        if (!continuationToken.startsWith(CONTINUATION_PREFIX)) {
+            throw badRequest("Invalid continuation token");
+        }
+        int offset;
+        try {
+            offset = Integer.parseInt(continuationToken.substring(CONTINUATION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw badRequest("Invalid continuation token");
+        }
+        if (offset < 0) {
+            throw badRequest("Invalid continuation token");
+        }
+        return offset;
+    }
+
+    private long parseChangeFeedContinuation(String continuationToken) {
+        if (continuationToken == null) {
+            return 0;
+        }
+        if (!continuationToken.startsWith(CHANGE_FEED_PREFIX)) {
+            throw badRequest("Invalid change feed continuation token");
+        }
+        try {
+            return Long.parseLong(continuationToken.substring(CHANGE_FEED_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw badRequest("Invalid change feed continuation token");
+        }
+    }
+
+    private String partitionKeyOf(JsonNode document) {
+        JsonNode value = document.at(settings.getPartitionKeyPath());
+        return value.isMissingNode() || value.isNull() ? "" : value.asText();
+    }
+
+    private static String key(String partitionKey, String id) {
+        return partitionKey + KEY_SEPARATOR + id;
+    }
+
+    private static String newActivityId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static CosmosBackendException badRequest(String message) {
+        return new CosmosBackendException(400, 0, message, newActivityId(), 0.0, null, null);
+    }
+
+    private record StoredItem(ObjectNode document, int sizeBytes, long sequence) {
+    }
+}
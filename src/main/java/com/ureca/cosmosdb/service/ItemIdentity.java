@@ -0,0 +1,7 @@
+package com.ureca.cosmosdb.service;
+
+/**
+ * Id and partition key value of one item to read.
+ */
+public record ItemIdentity(String id, String partitionKey) {
+}
@@ -0,0 +1,68 @@
+package com.ureca.cosmosdb.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Cheap approximation of the serialized JSON size of result documents (maps, lists or {@link JsonNode}s),
+ * used for byte-bounded caches and size metrics where serializing just to measure would cost too much.
+ */
+public final class JsonSizeEstimator {
+
+    private JsonSizeEstimator() {
+    }
+
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length() + 2;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 8;
+        }
+        if (value instanceof JsonNode node) {
+            return estimate(node);
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += estimate(entry.getKey()) + estimate(entry.getValue()) + 2;
+            }
+            return size;
+        }
+        if (value instanceof Iterable<?> iterable) {
+            long size = 2;
+            for (Object element : iterable) {
+                size += estimate(element) + 1;
+            }
+            return size;
+        }
+        return 16;
+    }
+
+    private static long estimate(JsonNode node) {
+        if (node.isObject()) {
+            long size = 2;
+            for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                size += field.getKey().length() + 4 + estimate(field.getValue());
+            }
+            return size;
+        }
+        if (node.isArray()) {
+            long size = 2;
+            for (JsonNode element : node) {
+                size += estimate(element) + 1;
+            }
+            return size;
+        }
+        if (node.isTextual()) {
+            return node.textValue().length() + 2;
+        }
+        return 8;
+    }
+}
@@ -0,0 +1,309 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * In-memory copies of small, rarely changing containers, kept current from their change feed.
+ * <p>
+ * Each configured container is read from the beginning of its change feed, then polled for changes
+ * every {@code poll-interval}. Point reads and single-partition {@code SELECT * FROM c WHERE c.path = value}
+ * queries are answered from the copy at no RU cost. Until the first full read has finished, or when the
+ * last caught-up poll is older than {@code max-lag}, the copy does not answer and requests go to Cosmos DB.
+ * <p>
+ * The change feed does not report deletions, so the copy is rebuilt from the beginning every
+ * {@code resync-interval}. The old copy keeps serving until the new one has caught up.
+ */
+@Component
+@Slf4j
+public class LocalChangeFeedStore {
+
+    private static final char KEY_SEPARATOR = '\u0001';
+    private static final String ACTIVITY_ID = "local";
+
+    private final CosmosQueryBackend backend;
+    private final CosmosDbProperties.LocalStore settings;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ContainerCopy> copies = new ConcurrentHashMap<>();
+
+    public LocalChangeFeedStore(CosmosQueryBackend backend, CosmosDbProperties properties, ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.backend = backend;
+        this.settings = properties.getLocalStore();
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        settings.getContainers().forEach((container, partitionKeyPath) -> {
+            ContainerCopy copy = new ContainerCopy(container, partitionKeyPath);
+            copies.put(container, copy);
+            copy.start();
+        });
+        log.info("Local change feed store enabled for containers {}", copies.keySet());
+    }
+
+    @PreDestroy
+    void stop() {
+        copies.values().forEach(ContainerCopy::stop);
+    }
+
+    /**
+     * True if {@code container} is configured to be kept locally, whether or not its copy is current.
+     */
+    public boolean holds(String container) {
+        return copies.containsKey(container);
+    }
+
+    /**
+     * Reads an item from the local copy: a page with the item, or with no results if the copy does not
+     * have it. Null if the copy cannot answer and the read has to go to Cosmos DB.
+     */
+    public <T> QueryPage<T> readItem(String container, String id, String partitionKey, Class<T> itemType) {
+        ContainerCopy copy = copies.get(container);
+        if (copy == null) {
+            return null;
+        }
+        Generation generation = copy.current();
+        if (generation == null || partitionKey == null) {
+            return fallback(copy);
+        }
+        JsonNode document = generation.documents.get(key(partitionKey, id));
+        return hit(copy, document != null ? List.of(document) : List.of(), itemType);
+    }
+
+    /**
+     * Runs a single-partition query against the local copy. Null if the copy cannot answer: it is not
+     * current, there is no partition key, the query is not a simple equality filter, or the results do
+     * not fit in one page of {@code maxItemCount}.
+     */
+    public <T> QueryPage<T> query(String container, SqlQuerySpec querySpec, String partitionKey, Integer maxItemCount,
+                                  Class<T> itemType) {
+        ContainerCopy copy = copies.get(container);
+        if (copy == null) {
+            return null;
+        }
+        Generation generation = copy.current();
+        if (generation == null || partitionKey == null) {
+            return fallback(copy);
+        }
+
+        Predicate<JsonNode> filter;
+        try {
+            filter = SimpleQueryFilter.parse(querySpec, objectMapper);
+        } catch (IllegalArgumentException e) {
+            return fallback(copy);
+        }
+
+        List<JsonNode> matches = new ArrayList<>();
+        for (JsonNode document : generation.partition(partitionKey).values()) {
+            if (filter.test(document)) {
+                if (maxItemCount != null && matches.size() == maxItemCount) {
+                    // More than one page; continuation tokens only make sense against Cosmos DB
+                    return fallback(copy);
+                }
+                matches.add(document);
+            }
+        }
+        return hit(copy, matches, itemType);
+    }
+
+    private <T> QueryPage<T> hit(ContainerCopy copy, List<JsonNode> documents, Class<T> itemType) {
+        copy.hits.increment();
+        List<T> results = new ArrayList<>(documents.size());
+        for (JsonNode document : documents) {
+            results.add(convert(document, itemType));
+        }
+        return QueryPage.<T>builder()
+                .results(results)
+                .requestCharge(0.0)
+                .activityId(ACTIVITY_ID)
+                .build();
+    }
+
+    private <T> QueryPage<T> fallback(ContainerCopy copy) {
+        copy.fallbacks.increment();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(JsonNode document, Class<T> itemType) {
+        // Object.class is materialized as maps, as the SDK does
+        if (itemType != Object.class && itemType.isInstance(document)) {
+            return (T) document;
+        }
+        return objectMapper.convertValue(document, itemType);
+    }
+
+    private static String key(String partitionKey, String id) {
+        return partitionKey + KEY_SEPARATOR + id;
+    }
+
+    /**
+     * The local copy of one container and the loop that keeps it current.
+     */
+    private final class ContainerCopy {
+        private final String container;
+        private final String partitionKeyPath;
+        private final Counter hits;
+        private final Counter fallbacks;
+        private volatile Generation generation;
+        private volatile long caughtUpNanos;
+        private volatile boolean disabled;
+        private Disposable poller;
+
+        private ContainerCopy(String container, String partitionKeyPath) {
+            this.container = container;
+            this.partitionKeyPath = partitionKeyPath;
+            this.hits = requests(container, "hit");
+            this.fallbacks = requests(container, "fallback");
+
+            Gauge.builder("sidecar.localstore.lag", this, ContainerCopy::lagSeconds)
+                    .description("Seconds since the local copy last caught up with the change feed")
+                    .baseUnit("seconds")
+                    .tag("container", container)
+                    .register(meterRegistry);
+            Gauge.builder("sidecar.localstore.documents", this, copy -> copy.generation != null ? copy.generation.documents.size() : 0)
+                    .description("Documents held in the local copy")
+                    .tag("container", container)
+                    .register(meterRegistry);
+            Gauge.builder("sidecar.localstore.bytes", this, copy -> copy.generation != null ? copy.generation.bytes.get() : 0)
+                    .description("Estimated JSON size of the documents held in the local copy")
+                    .baseUnit("bytes")
+                    .tag("container", container)
+                    .register(meterRegistry);
+        }
+
+        private Counter requests(String container, String result) {
+            return Counter.builder("sidecar.localstore.requests")
+                    .description("Requests for locally stored containers, answered locally (hit) or sent to Cosmos DB (fallback)")
+                    .tag("container", container)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+
+        void start() {
+            poller = Mono.defer(this::poll)
+                    .then(Mono.delay(settings.getPollInterval()))
+                    .repeat(() -> !disabled)
+                    .subscribe();
+        }
+
+        void stop() {
+            if (poller != null) {
+                poller.dispose();
+            }
+        }
+
+        /**
+         * The generation to answer from, or null if there is none or it is too far behind.
+         */
+        Generation current() {
+            Generation current = generation;
+            if (current == null || System.nanoTime() - caughtUpNanos > settings.getMaxLag().toNanos()) {
+                return null;
+            }
+            return current;
+        }
+
+        private Mono<Void> poll() {
+            Generation current = generation;
+            boolean resync = current == null || (!settings.getResyncInterval().isZero()
+                    && System.nanoTime() - current.startedNanos > settings.getResyncInterval().toNanos());
+            Generation target = resync ? new Generation() : current;
+
+            return backend.readChangeFeed(container, target.continuationToken, settings.getMaxItemsPerPage())
+                    .doOnNext(page -> target.apply(page, partitionKeyPath))
+                    .then(Mono.fromRunnable(() -> {
+                        if (target != current) {
+                            log.info("Local copy of container {} loaded: {} documents, ~{} bytes",
+                                    container, target.documents.size(), target.bytes.get());
+                            generation = target;
+                        }
+                        caughtUpNanos = System.nanoTime();
+                    }))
+                    .onErrorResume(e -> {
+                        if (target.overflowed) {
+                            log.warn("Container {} has more than {} documents; it is no longer kept locally",
+                                    container, settings.getMaxDocuments());
+                            generation = null;
+                            disabled = true;
+                        } else {
+                            log.warn("Failed to read the change feed of container {}: {}", container, e.getMessage());
+                        }
+                        return Mono.empty();
+                    })
+                    .then();
+        }
+
+        private double lagSeconds() {
+            return generation == null ? Double.NaN
+                    : (System.nanoTime() - caughtUpNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * One full copy of a container: built from the beginning of the change feed, then updated in place.
+     */
+    private final class Generation {
+        private final ConcurrentSkipListMap<String, JsonNode> documents = new ConcurrentSkipListMap<>();
+        private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+        private final long startedNanos = System.nanoTime();
+        private volatile String continuationToken;
+        private volatile boolean overflowed;
+
+        void apply(QueryPage<JsonNode> page, String partitionKeyPath) {
+            for (JsonNode document : page.getResults()) {
+                JsonNode id = document.get("id");
+                if (id == null || !id.isTextual()) {
+                    continue;
+                }
+                JsonNode partitionKey = document.at(partitionKeyPath);
+                String key = key(partitionKey.isMissingNode() || partitionKey.isNull() ? "" : partitionKey.asText(),
+                        id.textValue());
+
+                long size = JsonSizeEstimator.estimate(document);
+                Long previous = sizes.put(key, size);
+                bytes.addAndGet(size - (previous != null ? previous : 0));
+                documents.put(key, document);
+            }
+            if (documents.size() > settings.getMaxDocuments()) {
+                overflowed = true;
+                throw new IllegalStateException("Local copy exceeds " + settings.getMaxDocuments() + " documents");
+            }
+            continuationToken = page.getContinuationToken();
+        }
+
+        NavigableMap<String, JsonNode> partition(String partitionKey) {
+            return documents.subMap(partitionKey + KEY_SEPARATOR, true,
+                    partitionKey + (char) (KEY_SEPARATOR + 1), false);
+        }
+    }
+}
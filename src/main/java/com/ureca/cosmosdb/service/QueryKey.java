@@ -0,0 +1,23 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.model.QueryRequest;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identity of a query request: two requests with equal keys return the same page.
+ * Parameter names are normalized to their {@code @}-prefixed form and sorted.
+ */
+public record QueryKey(String container, String sql, Map<String, Object> params, String partitionKey,
+                       Integer maxItemCount, String continuationToken, boolean passthrough) {
+
+    public static QueryKey of(String container, QueryRequest request, String partitionKey,
+                              Integer maxItemCount, String continuationToken, boolean passthrough) {
+        Map<String, Object> params = new TreeMap<>();
+        if (request.getParams() != null) {
+            request.getParams().forEach((name, value) -> params.put(name.startsWith("@") ? name : "@" + name, value));
+        }
+        return new QueryKey(container, request.getSql(), params, partitionKey, maxItemCount, continuationToken, passthrough);
+    }
+}
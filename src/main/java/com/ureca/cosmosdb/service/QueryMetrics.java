@@ -0,0 +1,199 @@
+package com.ureca.cosmosdb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Per-container query metrics, tagged by container, status code and query shape.
+ * <p>
+ * {@code sidecar.request.latency} is what the caller saw, including cache hits and coalesced waits.
+ * The {@code sidecar.upstream.*} meters only count calls that actually reached the backend, so RU is
+ * recorded once per upstream call, however many callers shared it. {@code sidecar.upstream.hedged} over
+ * the upstream call count is the hedge rate; its {@code result=won} share is the win rate.
+ */
+@Component
+public class QueryMetrics {
+
+    public static final String SHAPE_POINT_READ = "point_read";
+    public static final String SHAPE_SINGLE_PARTITION = "single_partition";
+    public static final String SHAPE_CROSS_PARTITION = "cross_partition";
+    public static final String SHAPE_READ_MANY = "read_many";
+
+    private static final int MAX_METERS = 10_000;
+
+    private final MeterRegistry meterRegistry;
+    // Registered once per series; looking a meter up in the registry on every request is not free
+    private final Cache<MeterKey, Meter> meters = Caffeine.newBuilder()
+            .maximumSize(MAX_METERS)
+            .build();
+
+    public QueryMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public static String queryShape(String partitionKey) {
+        return partitionKey != null ? SHAPE_SINGLE_PARTITION : SHAPE_CROSS_PARTITION;
+    }
+
+    /**
+     * Times a request from subscription to response, tagged with the status code of the response.
+     */
+    public Mono<QueryResponse> recordRequest(String container, String shape, Mono<QueryResponse> response) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return response.doOnNext(r -> meter(new MeterKey("sidecar.request.latency", container, statusOf(r), shape, null),
+                    key -> Timer.builder(key.name())
+                            .description("End-to-end query latency inside the sidecar")
+                            .tags(key.tags())
+                            .register(meterRegistry))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Times one backend call and records its RU charge, result count and, on 429, the retry-after.
+     */
+    public <P extends QueryPage<?>> Mono<P> recordUpstream(String container, String shape, Mono<P> upstream) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return upstream
+                    .doOnNext(page -> {
+                        upstreamLatency(container, 200, shape).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        recordPage(container, shape, page);
+                    })
+                    .doOnError(e -> recordUpstreamError(container, shape, e, System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Records RU and result count per page of a streamed query; the latency covers the whole stream.
+     */
+    public <P extends QueryPage<?>> Flux<P> recordUpstreamPages(String container, String shape, Flux<P> pages) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return pages
+                    .doOnNext(page -> recordPage(container, shape, page))
+                    .doOnError(e -> recordUpstreamError(container, shape, e, System.nanoTime() - start))
+                    // Complete, or cancelled once the caller's item/RU limit was reached
+                    .doFinally(signal -> {
+                        if (signal != SignalType.ON_ERROR) {
+                            upstreamLatency(container, 200, shape).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Records the size of a response body written for {@code container}.
+     */
+    public void recordResponseBytes(String container, int status, long bytes) {
+        meter(new MeterKey("sidecar.response.bytes", container, status, null, null),
+                key -> DistributionSummary.builder(key.name())
+                        .description("Size of response bodies written to callers")
+                        .baseUnit("bytes")
+                        .tags(key.tags())
+                        .register(meterRegistry))
+                .record(bytes);
+    }
+
+    private void recordPage(String container, String shape, QueryPage<?> page) {
+        upstreamRu(container, 200, shape).record(page.getRequestCharge());
+        meter(new MeterKey("sidecar.upstream.results", container, 200, shape, null),
+                key -> DistributionSummary.builder(key.name())
+                        .description("Items returned per upstream call")
+                        .tags(key.tags())
+                        .register(meterRegistry))
+                .record(page.getResults().size());
+        if (page.isHedged()) {
+            meter(new MeterKey("sidecar.upstream.hedged", container, 200, shape, page.isHedgeWon() ? "won" : "lost"),
+                    key -> Counter.builder(key.name())
+                            .description("Upstream calls also sent to another region, by which region answered first")
+                            .tags(key.tags())
+                            .register(meterRegistry))
+                    .increment();
+        }
+    }
+
+    private void recordUpstreamError(String container, String shape, Throwable error, long elapsedNanos) {
+        int status = statusOf(error);
+        upstreamLatency(container, status, shape).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (!(error instanceof CosmosBackendException e)) {
+            return;
+        }
+
+        upstreamRu(container, status, shape).record(e.getRequestCharge());
+        if (e.getStatusCode() == 429 && e.getRetryAfterDuration() != null) {
+            meter(new MeterKey("sidecar.upstream.retry.after", container, null, shape, null),
+                    key -> DistributionSummary.builder(key.name())
+                            .description("Retry-after requested by throttled (429) upstream calls")
+                            .baseUnit("milliseconds")
+                            .tags(key.tags())
+                            .register(meterRegistry))
+                    .record(e.getRetryAfterDuration().toMillis());
+        }
+    }
+
+    private Timer upstreamLatency(String container, int status, String shape) {
+        return meter(new MeterKey("sidecar.upstream.latency", container, status, shape, null),
+                key -> Timer.builder(key.name())
+                        .description("Latency of calls to Cosmos DB, including SDK retries")
+                        .tags(key.tags())
+                        .register(meterRegistry));
+    }
+
+    private DistributionSummary upstreamRu(String container, int status, String shape) {
+        return meter(new MeterKey("sidecar.upstream.ru", container, status, shape, null),
+                key -> DistributionSummary.builder(key.name())
+                        .description("Request units charged per upstream call")
+                        .tags(key.tags())
+                        .register(meterRegistry));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <M extends Meter> M meter(MeterKey key, Function<MeterKey, M> register) {
+        return (M) meters.get(key, register);
+    }
+
+    private static int statusOf(QueryResponse response) {
+        return response.getCosmos() != null ? response.getCosmos().getStatusCode() : 500;
+    }
+
+    private static int statusOf(Throwable error) {
+        if (error instanceof CosmosBackendException e) {
+            return e.getStatusCode();
+        }
+        return error instanceof TimeoutException ? 408 : 500;
+    }
+
+    /**
+     * One series: a meter name and its tags, null where the meter has no such tag.
+     */
+    private record MeterKey(String name, String container, Integer status, String shape, String result) {
+
+        Tags tags() {
+            Tags tags = Tags.of("container", container);
+            if (status != null) {
+                tags = tags.and("status", Integer.toString(status));
+            }
+            if (shape != null) {
+                tags = tags.and("shape", shape);
+            }
+            return result != null ? tags.and("result", result) : tags;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.ureca.cosmosdb.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * One page of results returned by a {@link CosmosQueryBackend}.
+ */
+@Value
+@Builder
+public class QueryPage<T> {
+    List<T> results;
+    double requestCharge;
+    String activityId;
+    String continuationToken;
+    /** Renders the SDK diagnostics for this call on demand; null when the backend has none. */
+    Supplier<String> diagnostics;
+    /** True if the call was also sent to another region after the hedging threshold. */
+    boolean hedged;
+    /** True if a hedged call was answered by another region than the first preferred one. */
+    boolean hedgeWon;
+}
@@ -0,0 +1,154 @@
+package com.ureca.cosmosdb.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opt-in response cache for query pages.
+ * <p>
+ * Entries are bounded by estimated JSON size with Caffeine's W-TinyLFU eviction and expire after a
+ * per-container TTL. Concurrent misses for the same key share one upstream call. Only successful
+ * responses are retained; errors are handed to the callers that were waiting on them and dropped.
+ */
+@Component
+@Slf4j
+public class QueryResultCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final CosmosDbProperties.Cache settings;
+    private final AsyncCache<QueryKey, QueryResponse> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter ruSaved;
+
+    public QueryResultCache(CosmosDbProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getMaxSize().toBytes())
+                .weigher(this::weigh)
+                .expireAfter(new ResponseExpiry())
+                .buildAsync();
+
+        this.hits = cacheRequests(meterRegistry, "hit");
+        this.misses = cacheRequests(meterRegistry, "miss");
+        this.coalesced = cacheRequests(meterRegistry, "coalesced");
+        this.ruSaved = Counter.builder("sidecar.cache.ru.saved")
+                .description("Request units not spent because the response was served from the cache")
+                .register(meterRegistry);
+        Gauge.builder("sidecar.cache.entries", cache, c -> c.synchronous().estimatedSize())
+                .description("Number of cached query responses")
+                .register(meterRegistry);
+        Gauge.builder("sidecar.cache.weight", cache, c -> c.synchronous().policy().eviction()
+                        .map(eviction -> (double) eviction.weightedSize().orElse(0L))
+                        .orElse(0.0))
+                .description("Estimated size of cached query responses")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (settings.isEnabled()) {
+            log.info("Query result cache enabled: default TTL {}, max size {}", settings.getDefaultTtl(), settings.getMaxSize());
+        }
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Returns the cached response for {@code key}, or subscribes to {@code loader} once for all concurrent
+     * callers and caches its result. Hits carry the original metadata flagged with {@code cacheHit}.
+     */
+    public Mono<QueryResponse> get(QueryKey key, Mono<QueryResponse> loader) {
+        Duration ttl = ttlFor(key);
+        if (ttl.isZero() || ttl.isNegative()) {
+            return loader;
+        }
+
+        return Mono.defer(() -> {
+            AtomicBoolean loaded = new AtomicBoolean();
+            CompletableFuture<QueryResponse> future = cache.get(key, (k, executor) -> {
+                loaded.set(true);
+                return loader.toFuture();
+            });
+
+            // A cancelled caller must not cancel the load other callers are waiting on
+            Mono<QueryResponse> response = Mono.fromFuture(future, true);
+            if (loaded.get()) {
+                misses.increment();
+                return response;
+            }
+
+            (future.isDone() ? hits : coalesced).increment();
+            return response.map(this::markCacheHit);
+        });
+    }
+
+    private QueryResponse markCacheHit(QueryResponse response) {
+        if (!response.isOk() || response.getCosmos() == null) {
+            return response;
+        }
+        ruSaved.increment(response.getCosmos().getRu());
+        return response.toBuilder()
+                .cosmos(response.getCosmos().toBuilder().cacheHit(true).build())
+                .build();
+    }
+
+    /**
+     * TTL of a cache key's container; keys of other targets carry the qualified name, TTLs the plain one.
+     */
+    private Duration ttlFor(QueryKey key) {
+        return settings.getContainerTtl().getOrDefault(CosmosTarget.containerName(key.container()),
+                settings.getDefaultTtl());
+    }
+
+    private int weigh(QueryKey key, QueryResponse response) {
+        long bytes = ENTRY_OVERHEAD_BYTES + (key.sql() != null ? key.sql().length() : 0);
+        if (response.getData() != null) {
+            bytes += JsonSizeEstimator.estimate(response.getData().getResults());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static Counter cacheRequests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("sidecar.cache.requests")
+                .description("Query result cache lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Successful responses live for their container's TTL; anything else expires immediately.
+     */
+    private final class ResponseExpiry implements Expiry<QueryKey, QueryResponse> {
+
+        @Override
+        public long expireAfterCreate(QueryKey key, QueryResponse response, long currentTime) {
+            return response.isOk() ? ttlFor(key).toNanos() : 0L;
+        }
+
+        @Override
+        public long expireAfterUpdate(QueryKey key, QueryResponse response, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(QueryKey key, QueryResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
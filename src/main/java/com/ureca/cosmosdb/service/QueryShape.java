@@ -0,0 +1,56 @@
+package com.ureca.cosmosdb.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What the service needs to know about a SQL text. Parsed once per distinct SQL string by
+ * {@link QueryShapeCache} and shared by every request that sends the same SQL.
+ */
+public final class QueryShape {
+
+    // SELECT * FROM c WHERE c.id = @id
+    private static final Pattern POINT_READ_PATTERN = Pattern.compile(
+            "^\\s*SELECT\\s+\\*\\s+FROM\\s+(\\w+)\\s+WHERE\\s+\\1\\.id\\s*=\\s*@(\\w+)\\s*$",
+            Pattern.CASE_INSENSITIVE);
+
+    // Parameter keys come from callers; stop remembering new ones past this many per shape
+    private static final int MAX_PARAMETER_NAMES = 64;
+
+    static final QueryShape NO_SQL = new QueryShape(null);
+
+    private final String pointReadParameter;
+    private final Map<String, String> parameterNames = new ConcurrentHashMap<>();
+
+    private QueryShape(String pointReadParameter) {
+        this.pointReadParameter = pointReadParameter;
+    }
+
+    static QueryShape parse(String sql) {
+        Matcher matcher = POINT_READ_PATTERN.matcher(sql);
+        return new QueryShape(matcher.matches() ? matcher.group(2) : null);
+    }
+
+    /**
+     * Name (without '@') of the id parameter when the SQL is a single-item lookup by id, otherwise null.
+     */
+    public String pointReadParameter() {
+        return pointReadParameter;
+    }
+
+    /**
+     * The request parameter key with the '@' prefix Cosmos DB expects.
+     */
+    public String parameterName(String key) {
+        String name = parameterNames.get(key);
+        if (name == null) {
+            name = key.startsWith("@") ? key : "@" + key;
+            if (parameterNames.size() < MAX_PARAMETER_NAMES) {
+                parameterNames.putIfAbsent(key, name);
+            }
+        }
+        return name;
+    }
+}
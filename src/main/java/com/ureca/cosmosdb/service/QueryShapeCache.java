@@ -0,0 +1,26 @@
+package com.ureca.cosmosdb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of {@link QueryShape}s keyed by SQL text. Applications send a small set of SQL strings
+ * with varying parameters, so the regex and string work runs once per string instead of once per request.
+ */
+@Component
+public class QueryShapeCache {
+
+    private final Cache<String, QueryShape> shapes;
+
+    public QueryShapeCache(CosmosDbProperties properties) {
+        this.shapes = Caffeine.newBuilder()
+                .maximumSize(properties.getQuery().getShapeCacheSize())
+                .build();
+    }
+
+    public QueryShape get(String sql) {
+        return sql != null ? shapes.get(sql, QueryShape::parse) : QueryShape.NO_SQL;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ureca.cosmosdb.service;
+
+/**
+ * Caller-requested cross-partition execution knobs. {@code null} means "use the server default";
+ * the service clamps every value to the limits in {@code cosmos.query}.
+ *
+ * @param maxDegreeOfParallelism number of partitions queried concurrently (negative lets the SDK decide)
+ * @param maxBufferedItemCount   items buffered client-side across partitions during parallel execution
+ * @param prefetchPages          pages requested ahead of the consumer when streaming
+ */
+public record QueryTuning(Integer maxDegreeOfParallelism, Integer maxBufferedItemCount, Integer prefetchPages) {
+
+    public static final QueryTuning DEFAULT = new QueryTuning(null, null, null);
+}
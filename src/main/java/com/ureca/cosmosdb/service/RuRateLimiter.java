@@ -0,0 +1,326 @@
+package com.ureca.cosmosdb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Client-side RU budget per container, and optionally per caller within a container.
+ * <p>
+ * Each budget is a token bucket refilled at its RU/s rate. A request reserves its estimated cost up
+ * front. The estimate is a moving average of the RU that recent requests of the same container and
+ * shape were charged. When the bucket is short, the request waits for the refill, up to
+ * {@code max-queue-wait}. Beyond that it is shed with a 429 before it reaches Cosmos DB. Once the
+ * response arrives, the difference between the actual charge and the estimate is settled. A request
+ * that is cancelled, or fails without an answer from Cosmos DB, is refunded.
+ * <p>
+ * The rate adapts: a 429 from Cosmos DB cuts the container's rate, and successful calls restore it
+ * gradually up to the configured value.
+ */
+@Component
+@Slf4j
+public class RuRateLimiter {
+
+    /** Sub-status of a 429 issued by the sidecar itself; distinguishes it from Cosmos DB throttling. */
+    public static final int SUB_STATUS_BUDGET_EXHAUSTED = 10001;
+
+    private static final int MAX_BUCKETS = 10_000;
+    private static final double BACKOFF_FACTOR = 0.8;
+    private static final double MIN_RATE_FRACTION = 0.1;
+    private static final double RECOVERY_FRACTION = 0.01;
+
+    private final CosmosDbProperties.RateLimit settings;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, TokenBucket> buckets;
+    private final Cache<String, CostEstimate> estimates;
+    private final Map<String, RequestCounters> requestCounters = new ConcurrentHashMap<>();
+
+    public RuRateLimiter(CosmosDbProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getRateLimit();
+        this.meterRegistry = meterRegistry;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_BUCKETS)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.estimates = Caffeine.newBuilder()
+                .maximumSize(MAX_BUCKETS)
+                .build();
+
+        if (settings.isEnabled()) {
+            log.info("RU rate limiter enabled: default {} RU/s per container, per caller {}",
+                    settings.getDefaultRuPerSecond(), settings.getCallerRuPerSecond());
+        }
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Admits {@code upstream} against the budget of {@code container} and {@code callerId}, delaying it
+     * if the budget refills within the allowed wait, or fails with a 429 {@link CosmosBackendException}.
+     */
+    public <P extends QueryPage<?>> Mono<P> admit(String container, String shape, String callerId, Mono<P> upstream) {
+        if (!settings.isEnabled()) {
+            return upstream;
+        }
+        return Mono.defer(() -> {
+            CostEstimate estimate = estimate(container, shape);
+            Reservation reservation = reserve(container, callerId, estimate.value());
+            if (reservation == null) {
+                return Mono.error(shed(container));
+            }
+
+            Mono<P> admitted = upstream
+                    .doOnNext(page -> reservation.settle(estimate, page.getRequestCharge(), false))
+                    .doOnError(CosmosBackendException.class,
+                            e -> reservation.settle(estimate, e.getRequestCharge(), e.getStatusCode() == 429));
+            return (reservation.waitNanos > 0
+                    ? Mono.delay(Duration.ofNanos(reservation.waitNanos)).then(admitted)
+                    : admitted)
+                    // Cancelled while queued or in flight, or failed without a Cosmos DB answer
+                    .doFinally(signal -> reservation.release());
+        });
+    }
+
+    /**
+     * Admits a streamed query with one page's estimated cost; every page is then charged to the budget.
+     */
+    public <P extends QueryPage<?>> Flux<P> admitPages(String container, String shape, String callerId, Flux<P> pages) {
+        if (!settings.isEnabled()) {
+            return pages;
+        }
+        return Flux.defer(() -> {
+            CostEstimate estimate = estimate(container, shape);
+            Reservation reservation = reserve(container, callerId, estimate.value());
+            if (reservation == null) {
+                return Flux.error(shed(container));
+            }
+
+            boolean[] first = {true};
+            Flux<P> admitted = pages
+                    .doOnNext(page -> {
+                        if (first[0]) {
+                            reservation.settle(estimate, page.getRequestCharge(), false);
+                            first[0] = false;
+                        } else {
+                            reservation.charge(page.getRequestCharge());
+                        }
+                    })
+                    .doOnError(CosmosBackendException.class,
+                            e -> reservation.settle(estimate, e.getRequestCharge(), e.getStatusCode() == 429));
+            return (reservation.waitNanos > 0
+                    ? Mono.delay(Duration.ofNanos(reservation.waitNanos)).thenMany(admitted)
+                    : admitted)
+                    .doFinally(signal -> reservation.release());
+        });
+    }
+
+    private Reservation reserve(String container, String callerId, double cost) {
+        long maxWaitNanos = settings.getMaxQueueWait().toNanos();
+
+        // Overrides are configured by container name and apply to that container in every account and database
+        TokenBucket containerBucket = buckets.get(container, k -> new TokenBucket(settings.getContainerRuPerSecond()
+                .getOrDefault(CosmosTarget.containerName(container), settings.getDefaultRuPerSecond())));
+        long containerWait = containerBucket.reserve(cost, maxWaitNanos);
+        if (containerWait < 0) {
+            return null;
+        }
+
+        TokenBucket callerBucket = null;
+        long callerWait = 0;
+        if (callerId != null && settings.getCallerRuPerSecond() != null) {
+            callerBucket = buckets.get(container + '\u0001' + callerId,
+                    k -> new TokenBucket(settings.getCallerRuPerSecond()));
+            callerWait = callerBucket.reserve(cost, maxWaitNanos);
+            if (callerWait < 0) {
+                containerBucket.refund(cost);
+                return null;
+            }
+        }
+
+        long waitNanos = Math.max(containerWait, callerWait);
+        RequestCounters counters = requestCounters(container);
+        (waitNanos > 0 ? counters.queued : counters.admitted).increment();
+        return new Reservation(containerBucket, callerBucket, cost, waitNanos);
+    }
+
+    private CosmosBackendException shed(String container) {
+        requestCounters(container).shed.increment();
+        return new CosmosBackendException(429, SUB_STATUS_BUDGET_EXHAUSTED,
+                "Sidecar RU budget for container '" + container + "' is exhausted", "N/A", 0.0,
+                settings.getMaxQueueWait().isZero() ? Duration.ofMillis(100) : settings.getMaxQueueWait(), null);
+    }
+
+    private CostEstimate estimate(String container, String shape) {
+        return estimates.get(container + '\u0001' + shape, k -> new CostEstimate(settings.getInitialCostEstimate()));
+    }
+
+    private RequestCounters requestCounters(String container) {
+        return requestCounters.computeIfAbsent(container, RequestCounters::new);
+    }
+
+    /**
+     * The {@code sidecar.ratelimit.requests} counters of one container, registered once.
+     */
+    private final class RequestCounters {
+        private final Counter admitted;
+        private final Counter queued;
+        private final Counter shed;
+
+        private RequestCounters(String container) {
+            this.admitted = counter(container, "admitted");
+            this.queued = counter(container, "queued");
+            this.shed = counter(container, "shed");
+        }
+
+        private Counter counter(String container, String result) {
+            return Counter.builder("sidecar.ratelimit.requests")
+                    .description("Requests checked against the client-side RU budget, by outcome")
+                    .tag("container", container)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+
+    private final class Reservation {
+        private final TokenBucket containerBucket;
+        private final TokenBucket callerBucket;
+        private final double reserved;
+        private final long waitNanos;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Reservation(TokenBucket containerBucket, TokenBucket callerBucket, double reserved, long waitNanos) {
+            this.containerBucket = containerBucket;
+            this.callerBucket = callerBucket;
+            this.reserved = reserved;
+            this.waitNanos = waitNanos;
+        }
+
+        /**
+         * Settles the reservation against the actual charge and learns from it. A charge reported after
+         * the reservation was settled, such as a failed later page of a stream, is taken in full.
+         */
+        void settle(CostEstimate estimate, double actual, boolean throttled) {
+            if (settled.compareAndSet(false, true)) {
+                charge(actual - reserved);
+                estimate.update(actual, settings.getCostSmoothing());
+            } else {
+                charge(actual);
+            }
+            if (throttled) {
+                containerBucket.backOff();
+            } else {
+                containerBucket.recover();
+            }
+        }
+
+        /**
+         * Refunds the reservation if the call ended without a charge to settle against.
+         */
+        void release() {
+            if (settled.compareAndSet(false, true)) {
+                charge(-reserved);
+            }
+        }
+
+        void charge(double ru) {
+            containerBucket.take(ru);
+            if (callerBucket != null) {
+                callerBucket.take(ru);
+            }
+        }
+    }
+
+    /**
+     * Exponentially weighted moving average of the RU charged.
+     */
+    private static final class CostEstimate {
+        private volatile double value;
+
+        private CostEstimate(double initial) {
+            this.value = initial;
+        }
+
+        double value() {
+            return value;
+        }
+
+        synchronized void update(double actual, double smoothing) {
+            value += smoothing * (actual - value);
+        }
+    }
+
+    private final class TokenBucket {
+        private final double configuredRate;
+        private double rate;
+        private double tokens;
+        private long lastRefillNanos;
+
+        private TokenBucket(double ruPerSecond) {
+            this.configuredRate = ruPerSecond;
+            this.rate = ruPerSecond;
+            this.tokens = capacity();
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * Takes {@code cost} tokens. Returns 0 if they were available, the nanoseconds until the refill
+         * covers them if that is within {@code maxWaitNanos}, or -1 (nothing taken) otherwise.
+         */
+        synchronized long reserve(double cost, long maxWaitNanos) {
+            refill();
+            if (tokens >= cost) {
+                tokens -= cost;
+                return 0;
+            }
+            long waitNanos = (long) ((cost - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            tokens -= cost;
+            return waitNanos;
+        }
+
+        synchronized void take(double ru) {
+            refill();
+            tokens = Math.min(capacity(), tokens - ru);
+        }
+
+        synchronized void refund(double ru) {
+            take(-ru);
+        }
+
+        synchronized void backOff() {
+            rate = Math.max(configuredRate * MIN_RATE_FRACTION, rate * BACKOFF_FACTOR);
+        }
+
+        synchronized void recover() {
+            if (rate < configuredRate) {
+                rate = Math.min(configuredRate, rate + configuredRate * RECOVERY_FRACTION);
+            }
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity(), tokens + rate * (now - lastRefillNanos) / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+        }
+
+        private double capacity() {
+            return rate * settings.getBurst().toMillis() / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.CosmosEndToEndOperationLatencyPolicyConfig;
+import com.azure.cosmos.CosmosEndToEndOperationLatencyPolicyConfigBuilder;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.CosmosItemIdentity;
+import com.azure.cosmos.models.CosmosItemRequestOptions;
+import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.ureca.cosmosdb.config.CosmosClientRegistry;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CosmosQueryBackend} backed by the Cosmos DB Java SDK.
+ * <p>
+ * Container handles and end-to-end latency policies are immutable and are cached across requests.
+ * Request options are mutable SDK objects, so each request builds its own.
+ * <p>
+ * Requests run against the account and database of {@link BackendQueryOptions#getTarget()}. Concurrent
+ * calls per target can be capped; calls over the cap fail at once with a 429.
+ * <p>
+ * Queries and point reads may be hedged to other preferred regions, within the budget of
+ * {@link HedgingPolicy}. readMany takes no request options and is never hedged.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cosmos", name = "backend", havingValue = "COSMOS", matchIfMissing = true)
+@Slf4j
+public class SdkCosmosQueryBackend implements CosmosQueryBackend {
+
+    /** Sub-status of a 429 issued because a target already has its maximum of calls in flight. */
+    public static final int SUB_STATUS_TARGET_BUSY = 10002;
+
+    // Distinct deadlines in use: the default plus whatever X-Timeout-Ms values callers send
+    private static final int MAX_CACHED_POLICIES = 256;
+
+    private final CosmosClientRegistry clients;
+    private final Cache<String, CosmosAsyncContainer> containers;
+    private final Cache<Duration, CosmosEndToEndOperationLatencyPolicyConfig> endToEndPolicies;
+    private final Cache<Duration, CosmosEndToEndOperationLatencyPolicyConfig> hedgedEndToEndPolicies;
+    private final HedgingPolicy hedging;
+    private final Map<CosmosTarget, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public SdkCosmosQueryBackend(CosmosClientRegistry clients, CosmosDbProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.clients = clients;
+        this.hedging = new HedgingPolicy(properties, meterRegistry);
+        this.containers = Caffeine.newBuilder()
+                .maximumSize(properties.getQuery().getContainerCacheSize())
+                .build();
+        this.endToEndPolicies = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_POLICIES)
+                .build();
+        this.hedgedEndToEndPolicies = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_POLICIES)
+                .build();
+    }
+
+    @Override
+    public <T> Flux<QueryPage<T>> queryPages(String containerName, SqlQuerySpec querySpec,
+                                             BackendQueryOptions options, Class<T> itemType) {
+        // Page size is the byPage preferred page size; fan-out is configured separately below
+        Integer maxItemCount = options.getMaxItemCount();
+        CosmosTarget target = targetOf(options);
+
+        // The hedge is admitted per subscription, so the request options are built per subscription too
+        return hedging.hedgedPages(options.getTimeout(), hedge -> {
+            // Configure query options
+            CosmosQueryRequestOptions requestOptions = new CosmosQueryRequestOptions();
+            if (options.getPartitionKey() != null) {
+                requestOptions.setPartitionKey(new PartitionKey(options.getPartitionKey()));
+            }
+            if (options.getTimeout() != null) {
+                requestOptions.setCosmosEndToEndOperationLatencyPolicyConfig(endToEndPolicy(options.getTimeout(), hedge != null));
+            }
+            if (options.getMaxDegreeOfParallelism() != null) {
+                requestOptions.setMaxDegreeOfParallelism(options.getMaxDegreeOfParallelism());
+            }
+            if (options.getMaxBufferedItemCount() != null) {
+                requestOptions.setMaxBufferedItemCount(options.getMaxBufferedItemCount());
+            }
+
+            Flux<FeedResponse<T>> pages = getContainer(containerName, target).flatMapMany(container ->
+                    maxItemCount != null && maxItemCount > 0
+                            ? container.queryItems(querySpec, requestOptions, itemType).byPage(options.getContinuationToken(), maxItemCount)
+                            : container.queryItems(querySpec, requestOptions, itemType).byPage(options.getContinuationToken()));
+
+            return limitInFlight(target, pages
+                    .map(feedResponse -> toQueryPage(feedResponse, hedge))
+                    .doOnError(CosmosException.class, e -> observe(hedge, e))
+                    .onErrorMap(CosmosException.class, CosmosBackendException::from));
+        });
+    }
+
+    @Override
+    public <T> Mono<QueryPage<T>> readItem(String containerName, String id, BackendQueryOptions options,
+                                           Class<T> itemType) {
+        CosmosTarget target = targetOf(options);
+        return hedging.hedged(options.getTimeout(), hedge -> {
+            CosmosItemRequestOptions requestOptions = new CosmosItemRequestOptions();
+            if (options.getTimeout() != null) {
+                requestOptions.setCosmosEndToEndOperationLatencyPolicyConfig(endToEndPolicy(options.getTimeout(), hedge != null));
+            }
+
+            return limitInFlight(target, getContainer(containerName, target)
+                    .flatMap(container -> container.readItem(id, new PartitionKey(options.getPartitionKey()), requestOptions, itemType))
+                    .map(itemResponse -> toItemPage(itemResponse, hedge))
+                    .doOnError(CosmosException.class, e -> observe(hedge, e))
+                    .onErrorMap(CosmosException.class, CosmosBackendException::from));
+        });
+    }
+
+    @Override
+    public <T> Mono<QueryPage<T>> readMany(String containerName, List<ItemIdentity> items, BackendQueryOptions options,
+                                           Class<T> itemType) {
+        List<CosmosItemIdentity> identities = new ArrayList<>(items.size());
+        for (ItemIdentity item : items) {
+            identities.add(new CosmosItemIdentity(new PartitionKey(item.partitionKey()), item.id()));
+        }
+
+        // The SDK groups the identities by physical partition and issues one request per partition.
+        // readMany takes no request options, so the deadline is enforced on the reactive chain only.
+        CosmosTarget target = targetOf(options);
+        Mono<FeedResponse<T>> response = getContainer(containerName, target)
+                .flatMap(container -> container.readMany(identities, itemType));
+        if (options.getTimeout() != null) {
+            response = response.timeout(options.getTimeout());
+        }
+        return limitInFlight(target, response
+                .map(this::toQueryPage)
+                .onErrorMap(CosmosException.class, CosmosBackendException::from));
+    }
+
+    @Override
+    public Flux<QueryPage<JsonNode>> readChangeFeed(String containerName, String continuationToken, int maxItemCount) {
+        // Pull model over the whole container; the flux completes once every feed range has caught up
+        CosmosChangeFeedRequestOptions requestOptions = continuationToken == null
+                ? CosmosChangeFeedRequestOptions.createForProcessingFromBeginning(FeedRange.forFullRange())
+                : CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(continuationToken);
+        requestOptions.setMaxItemCount(maxItemCount);
+
+        return getContainer(containerName, CosmosTarget.DEFAULT)
+                .flatMapMany(container -> container.queryChangeFeed(requestOptions, JsonNode.class).byPage(maxItemCount))
+                .map(this::toQueryPage)
+                .onErrorMap(CosmosException.class, CosmosBackendException::from);
+    }
+
+    /**
+     * The SDK cancels the operation, including its retries, once the deadline expires and fails it with a 408.
+     * With {@code hedge}, it also sends the operation to the next preferred region after the hedging threshold.
+     */
+    private CosmosEndToEndOperationLatencyPolicyConfig endToEndPolicy(Duration timeout, boolean hedge) {
+        if (hedge) {
+            return hedgedEndToEndPolicies.get(timeout, t -> new CosmosEndToEndOperationLatencyPolicyConfigBuilder(t)
+                    .availabilityStrategy(hedging.strategy())
+                    .build());
+        }
+        return endToEndPolicies.get(timeout, t -> new CosmosEndToEndOperationLatencyPolicyConfigBuilder(t).build());
+    }
+
+    /**
+     * The container handle; resolving it may create the account's client on first use. An unknown account,
+     * or no database for it, fails with a 400.
+     */
+    private Mono<CosmosAsyncContainer> getContainer(String containerName, CosmosTarget target) {
+        String key = target.qualify(containerName);
+        CosmosAsyncContainer container = containers.getIfPresent(key);
+        if (container != null) {
+            return Mono.just(container);
+        }
+        return clients.client(target.account())
+                .map(client -> containers.get(key, k -> client
+                        .getDatabase(clients.database(target.account(), target.database()))
+                        .getContainer(containerName)))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new CosmosBackendException(400, 0, e.getMessage(), "N/A", 0.0, null, e));
+    }
+
+    private static CosmosTarget targetOf(BackendQueryOptions options) {
+        return options.getTarget() != null ? options.getTarget() : CosmosTarget.DEFAULT;
+    }
+
+    private static void observe(HedgingPolicy.Hedge hedge, CosmosException e) {
+        if (hedge != null) {
+            hedge.observe(e.getDiagnostics());
+        }
+    }
+
+    private <T> Mono<T> limitInFlight(CosmosTarget target, Mono<T> call) {
+        Integer maxInFlight = clients.maxInFlight(target.account());
+        if (maxInFlight == null) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            AtomicInteger counter = inFlight.computeIfAbsent(target, t -> new AtomicInteger());
+            if (counter.incrementAndGet() > maxInFlight) {
+                counter.decrementAndGet();
+                return Mono.error(targetBusy(target, maxInFlight));
+            }
+            return call.doFinally(signal -> counter.decrementAndGet());
+        });
+    }
+
+    private <T> Flux<T> limitInFlight(CosmosTarget target, Flux<T> call) {
+        Integer maxInFlight = clients.maxInFlight(target.account());
+        if (maxInFlight == null) {
+            return call;
+        }
+        return Flux.defer(() -> {
+            AtomicInteger counter = inFlight.computeIfAbsent(target, t -> new AtomicInteger());
+            if (counter.incrementAndGet() > maxInFlight) {
+                counter.decrementAndGet();
+                return Flux.error(targetBusy(target, maxInFlight));
+            }
+            return call.doFinally(signal -> counter.decrementAndGet());
+        });
+    }
+
+    private static CosmosBackendException targetBusy(CosmosTarget target, int maxInFlight) {
+        return new CosmosBackendException(429, SUB_STATUS_TARGET_BUSY,
+                "Sidecar already has " + maxInFlight + " calls in flight to account "
+                        + (target.account() != null ? target.account() : "(default)") + ", database "
+                        + (target.database() != null ? target.database() : "(default)"),
+                "N/A", 0.0, Duration.ofMillis(10), null);
+    }
+
+    private <T> QueryPage<T> toQueryPage(FeedResponse<T> feedResponse) {
+        return toQueryPage(feedResponse, null);
+    }
+
+    private <T> QueryPage<T> toQueryPage(FeedResponse<T> feedResponse, HedgingPolicy.Hedge hedge) {
+        HedgingPolicy.Outcome hedgeOutcome = hedge != null
+                ? hedge.observe(feedResponse.getCosmosDiagnostics())
+                : HedgingPolicy.Outcome.NOT_HEDGED;
+        return QueryPage.<T>builder()
+                .results(feedResponse.getResults())
+                .requestCharge(feedResponse.getRequestCharge())
+                .activityId(feedResponse.getActivityId())
+                .continuationToken(feedResponse.getContinuationToken())
+                .diagnostics(() -> String.valueOf(feedResponse.getCosmosDiagnostics()))
+                .hedged(hedgeOutcome != HedgingPolicy.Outcome.NOT_HEDGED)
+                .hedgeWon(hedgeOutcome == HedgingPolicy.Outcome.HEDGE_WON)
+                .build();
+    }
+
+    private <T> QueryPage<T> toItemPage(CosmosItemResponse<T> itemResponse, HedgingPolicy.Hedge hedge) {
+        HedgingPolicy.Outcome hedgeOutcome = hedge != null
+                ? hedge.observe(itemResponse.getDiagnostics())
+                : HedgingPolicy.Outcome.NOT_HEDGED;
+        return QueryPage.<T>builder()
+                .results(List.of(itemResponse.getItem()))
+                .requestCharge(itemResponse.getRequestCharge())
+                .activityId(itemResponse.getActivityId())
+                .diagnostics(() -> String.valueOf(itemResponse.getDiagnostics()))
+                .hedged(hedgeOutcome != HedgingPolicy.Outcome.NOT_HEDGED)
+                .hedgeWon(hedgeOutcome == HedgingPolicy.Outcome.HEDGE_WON)
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates {@code SELECT * FROM c [WHERE c.path = value AND ...]} against JSON documents held in
+ * memory, as the in-memory backend and the change-feed local store do. Any other query is rejected
+ * with an {@link IllegalArgumentException} describing what is not supported.
+ */
+final class SimpleQueryFilter {
+
+    private static final Pattern SELECT_PATTERN = Pattern.compile(
+            "^\\s*SELECT\\s+\\*\\s+FROM\\s+(\\w+)(?:\\s+WHERE\\s+(.+?))?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern AND_PATTERN = Pattern.compile("\\s+AND\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PREDICATE_PATTERN = Pattern.compile(
+            "^\\(?\\s*(\\w+)((?:\\.\\w+)+)\\s*=\\s*(@\\w+|'[^']*'|\"[^\"]*\"|-?\\d+(?:\\.\\d+)?|true|false|null)\\s*\\)?$",
+            Pattern.CASE_INSENSITIVE);
+
+    private SimpleQueryFilter() {
+    }
+
+    static Predicate<JsonNode> parse(SqlQuerySpec querySpec, ObjectMapper objectMapper) {
+        Matcher matcher = SELECT_PATTERN.matcher(querySpec.getQueryText());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(
+                    "Only 'SELECT * FROM c [WHERE c.path = value AND ...]' queries are supported in memory");
+        }
+
+        String alias = matcher.group(1);
+        String whereClause = matcher.group(2);
+        Predicate<JsonNode> filter = document -> true;
+        if (whereClause == null) {
+            return filter;
+        }
+
+        for (String condition : AND_PATTERN.split(whereClause.trim())) {
+            Matcher predicate = PREDICATE_PATTERN.matcher(condition.trim());
+            if (!predicate.matches() || !predicate.group(1).equals(alias)) {
+                throw new IllegalArgumentException("Unsupported condition for the in-memory backend: " + condition.trim());
+            }
+            String pointer = predicate.group(2).replace('.', '/');
+            JsonNode expected = resolveValue(predicate.group(3), querySpec.getParameters(), objectMapper);
+            filter = filter.and(document -> valueEquals(document.at(pointer), expected));
+        }
+        return filter;
+    }
+
+    private static JsonNode resolveValue(String token, List<SqlParameter> parameters, ObjectMapper objectMapper) {
+        if (token.startsWith("@")) {
+            if (parameters != null) {
+                for (SqlParameter parameter : parameters) {
+                    if (token.equals(parameter.getName())) {
+                        return objectMapper.valueToTree(parameter.getValue(Object.class));
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Parameter " + token + " is not defined");
+        }
+        if (token.startsWith("'") || token.startsWith("\"")) {
+            return TextNode.valueOf(token.substring(1, token.length() - 1));
+        }
+        try {
+            return objectMapper.readTree(token.toLowerCase());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid literal: " + token);
+        }
+    }
+
+    private static boolean valueEquals(JsonNode actual, JsonNode expected) {
+        if (actual.isNumber() && expected.isNumber()) {
+            return actual.decimalValue().compareTo(expected.decimalValue()) == 0;
+        }
+        return actual.equals(expected);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the SDK diagnostics of upstream calls that crossed the latency or RU threshold, in a fixed-size
+ * ring buffer that overwrites the oldest entry.
+ * <p>
+ * Below the thresholds the only cost is a clock read and two comparisons. Above them, calls are sampled
+ * and rate limited before the diagnostics are rendered, which is the expensive part.
+ */
+@Component
+public class SlowQueryLog {
+
+    private final CosmosDbProperties.Diagnostics settings;
+    private final long latencyThresholdNanos;
+    private final AtomicReferenceArray<SlowQueryRecord> entries;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong windowSecond = new AtomicLong();
+    private final AtomicInteger windowCaptures = new AtomicInteger();
+    private final Counter captured;
+    private final Counter skipped;
+
+    public SlowQueryLog(CosmosDbProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getDiagnostics();
+        this.latencyThresholdNanos = settings.getLatencyThreshold().toNanos();
+        this.entries = new AtomicReferenceArray<>(Math.max(1, settings.getCapacity()));
+        this.captured = slowQueries(meterRegistry, "captured");
+        this.skipped = slowQueries(meterRegistry, "skipped");
+    }
+
+    /**
+     * Watches a single upstream call.
+     */
+    public <P extends QueryPage<?>> Mono<P> watch(String container, String shape, String sql, Mono<P> upstream) {
+        if (!settings.isEnabled()) {
+            return upstream;
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return upstream
+                    .doOnNext(page -> observe(container, shape, sql, System.nanoTime() - start, page))
+                    .doOnError(e -> observe(container, shape, sql, System.nanoTime() - start, e));
+        });
+    }
+
+    /**
+     * Watches each page of a streamed query; a page's latency is the time since the previous page.
+     */
+    public <P extends QueryPage<?>> Flux<P> watchPages(String container, String shape, String sql, Flux<P> pages) {
+        if (!settings.isEnabled()) {
+            return pages;
+        }
+        return Flux.defer(() -> {
+            long[] pageStart = {System.nanoTime()};
+            return pages
+                    .doOnNext(page -> {
+                        long now = System.nanoTime();
+                        observe(container, shape, sql, now - pageStart[0], page);
+                        pageStart[0] = now;
+                    })
+                    .doOnError(e -> observe(container, shape, sql, System.nanoTime() - pageStart[0], e));
+        });
+    }
+
+    /**
+     * Captured calls, newest first.
+     */
+    public List<SlowQueryRecord> snapshot() {
+        int capacity = entries.length();
+        long end = written.get();
+        List<SlowQueryRecord> records = new ArrayList<>(capacity);
+        for (long i = end - 1; i >= 0 && i >= end - capacity; i--) {
+            SlowQueryRecord record = entries.get((int) (i % capacity));
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    private void observe(String container, String shape, String sql, long elapsedNanos, QueryPage<?> page) {
+        String reason = reason(elapsedNanos, page.getRequestCharge());
+        if (reason != null) {
+            capture(container, shape, sql, elapsedNanos, page.getRequestCharge(), 200, page.getActivityId(), reason,
+                    page.getDiagnostics());
+        }
+    }
+
+    private void observe(String container, String shape, String sql, long elapsedNanos, Throwable error) {
+        if (error instanceof CosmosBackendException e) {
+            String reason = reason(elapsedNanos, e.getRequestCharge());
+            if (reason != null) {
+                capture(container, shape, sql, elapsedNanos, e.getRequestCharge(), e.getStatusCode(), e.getActivityId(),
+                        reason, e::renderDiagnostics);
+            }
+        } else if (error instanceof TimeoutException && elapsedNanos >= latencyThresholdNanos) {
+            capture(container, shape, sql, elapsedNanos, 0.0, 408, null, "latency", null);
+        }
+    }
+
+    private String reason(long elapsedNanos, double ru) {
+        boolean slow = elapsedNanos >= latencyThresholdNanos;
+        boolean expensive = ru >= settings.getRuThreshold();
+        if (slow && expensive) {
+            return "latency,ru";
+        }
+        return slow ? "latency" : expensive ? "ru" : null;
+    }
+
+    private void capture(String container, String shape, String sql, long elapsedNanos, double ru, int statusCode,
+                         String activityId, String reason, Supplier<String> diagnostics) {
+        if (!sampled()) {
+            skipped.increment();
+            return;
+        }
+
+        SlowQueryRecord record = new SlowQueryRecord(Instant.now(), container, shape, sql, elapsedNanos / 1_000_000,
+                ru, statusCode, activityId, reason, diagnostics != null ? diagnostics.get() : null);
+        entries.set((int) (written.getAndIncrement() % entries.length()), record);
+        captured.increment();
+    }
+
+    private boolean sampled() {
+        if (settings.getSampleRate() < 1.0 && ThreadLocalRandom.current().nextDouble() >= settings.getSampleRate()) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long window = windowSecond.get();
+        if (window != second && windowSecond.compareAndSet(window, second)) {
+            windowCaptures.set(0);
+        }
+        return windowCaptures.incrementAndGet() <= settings.getMaxCapturesPerSecond();
+    }
+
+    private static Counter slowQueries(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("sidecar.slow.queries")
+                .description("Upstream calls over the slow/expensive thresholds, by whether diagnostics were captured")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,14 @@
+package com.ureca.cosmosdb.service;
+
+import java.time.Instant;
+
+/**
+ * A captured slow or expensive upstream call. Parameter values are not kept; {@code sql} is null for
+ * point reads and readMany.
+ *
+ * @param reason      which threshold was crossed: {@code latency}, {@code ru} or both
+ * @param diagnostics SDK diagnostics as rendered by the SDK, or null when the backend has none
+ */
+public record SlowQueryRecord(Instant timestamp, String container, String shape, String sql, long latencyMs,
+                              double ru, int statusCode, String activityId, String reason, String diagnostics) {
+}
@@ -0,0 +1,149 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.CosmosMetadata;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries throttled and transient upstream failures so callers do not each have to.
+ * <p>
+ * The wait before retry {@code n} is the server's retry-after when there is one, otherwise
+ * {@code initialBackoff * 2^(n-1)} capped at {@code maxBackoff}, plus a random jitter. A retry whose wait
+ * would end past the request deadline is not attempted. A global budget caps retries to a fraction of
+ * the request rate, so an overloaded account does not also get a retry storm.
+ */
+@Component
+public class UpstreamRetry {
+
+    private final CosmosDbProperties.Retry settings;
+    private final Set<Integer> retryableStatusCodes;
+    private final RetryBudget budget;
+    private final Counter retries;
+    private final Counter budgetExhausted;
+
+    public UpstreamRetry(CosmosDbProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getRetry();
+        this.retryableStatusCodes = Set.copyOf(settings.getRetryableStatusCodes());
+        this.budget = new RetryBudget(settings.getBudgetRatio(), settings.getMinRetriesPerSecond());
+        this.retries = Counter.builder("sidecar.retry.attempts")
+                .description("Upstream calls retried by the sidecar")
+                .register(meterRegistry);
+        this.budgetExhausted = Counter.builder("sidecar.retry.budget.exhausted")
+                .description("Retries not attempted because the retry budget was exhausted")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Subscribes to {@code call} until it succeeds, fails with a non-retryable status, runs out of attempts
+     * or budget, or the next attempt would not fit before {@code timeout}. The final response reports the
+     * number of attempts and the RU charged across all of them.
+     */
+    public Mono<QueryResponse> execute(Mono<QueryResponse> call, Duration timeout) {
+        if (!settings.isEnabled()) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            budget.deposit();
+            return attempt(call, System.nanoTime() + timeout.toNanos(), 1, 0.0);
+        });
+    }
+
+    private Mono<QueryResponse> attempt(Mono<QueryResponse> call, long deadlineNanos, int attempt, double ruSoFar) {
+        return call.flatMap(response -> {
+            double totalRu = ruSoFar + (response.getCosmos() != null ? response.getCosmos().getRu() : 0.0);
+            Duration delay = retryDelay(response, attempt, deadlineNanos);
+            if (delay == null) {
+                return Mono.just(withAttempts(response, attempt, totalRu));
+            }
+            retries.increment();
+            return Mono.delay(delay).then(attempt(call, deadlineNanos, attempt + 1, totalRu));
+        });
+    }
+
+    /**
+     * The wait before the next attempt, or null if the response is final.
+     */
+    private Duration retryDelay(QueryResponse response, int attempt, long deadlineNanos) {
+        CosmosMetadata cosmos = response.getCosmos();
+        if (response.isOk() || cosmos == null || attempt >= settings.getMaxAttempts()
+                || !retryableStatusCodes.contains(cosmos.getStatusCode())
+                || cosmos.getSubStatus() == RuRateLimiter.SUB_STATUS_BUDGET_EXHAUSTED) {
+            return null;
+        }
+
+        long baseNanos = cosmos.getRetryAfterMs() != null
+                ? TimeUnit.MILLISECONDS.toNanos(cosmos.getRetryAfterMs())
+                : Math.min(settings.getMaxBackoff().toNanos(), settings.getInitialBackoff().toNanos() << (attempt - 1));
+        long delayNanos = baseNanos + (long) (baseNanos * settings.getJitter() * ThreadLocalRandom.current().nextDouble());
+        if (System.nanoTime() + delayNanos >= deadlineNanos) {
+            return null;
+        }
+        if (!budget.withdraw()) {
+            budgetExhausted.increment();
+            return null;
+        }
+        return Duration.ofNanos(delayNanos);
+    }
+
+    private static QueryResponse withAttempts(QueryResponse response, int attempts, double totalRu) {
+        if (response.getCosmos() == null) {
+            return response;
+        }
+        return response.toBuilder()
+                .cosmos(response.getCosmos().toBuilder().attempts(attempts).totalRu(totalRu).build())
+                .build();
+    }
+
+    /**
+     * Every request deposits {@code ratio} of a retry, and {@code minPerSecond} retries accrue over time.
+     * A retry withdraws one. The balance is capped at ten seconds' worth of the minimum rate, and at
+     * least ten retries.
+     */
+    private static final class RetryBudget {
+        private final double ratio;
+        private final double minPerSecond;
+        private final double maxBalance;
+        private double balance;
+        private long lastNanos = System.nanoTime();
+
+        private RetryBudget(double ratio, double minPerSecond) {
+            this.ratio = ratio;
+            this.minPerSecond = minPerSecond;
+            this.maxBalance = Math.max(10.0, minPerSecond * 10);
+            this.balance = maxBalance;
+        }
+
+        synchronized void deposit() {
+            accrue();
+            balance = Math.min(maxBalance, balance + ratio);
+        }
+
+        synchronized boolean withdraw() {
+            accrue();
+            if (balance < 1.0) {
+                return false;
+            }
+            balance -= 1.0;
+            return true;
+        }
+
+        private void accrue() {
+            long now = System.nanoTime();
+            balance = Math.min(maxBalance, balance + minPerSecond * (now - lastNanos) / TimeUnit.SECONDS.toNanos(1));
+            lastNanos = now;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.BatchQueryItem;
+import com.ureca.cosmosdb.model.BatchQueryResponse;
+import com.ureca.cosmosdb.model.QueryRequest;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CosmosQueryServiceTest {
+
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(300);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger cancelledQueries = new AtomicInteger();
+    private CosmosDbProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CosmosDbProperties();
+        properties.getInMemory().setPartitionKeyPath("/userId");
+        properties.getInMemory().setLatency(UPSTREAM_LATENCY);
+        properties.getRetry().setEnabled(false);
+    }
+
+    @Test
+    void sharedCallDoesNotImposeTheFirstCallersDeadline() {
+        properties.getQuery().setCoalesceInFlight(true);
+        CosmosQueryService service = service();
+
+        Tuple2<QueryResponse, QueryResponse> responses = Mono.zip(
+                        query(service, "u-1", 100),
+                        query(service, "u-1", 5000))
+                .block();
+
+        assertThat(responses.getT1().getCosmos().getStatusCode()).isEqualTo(408);
+        assertThat(responses.getT2().isOk()).isTrue();
+        assertThat(responses.getT2().getData().getCount()).isEqualTo(1);
+        assertThat(cancelledQueries).hasValue(0);
+    }
+
+    @Test
+    void callerDeadlineAppliesToSharedCalls() {
+        properties.getQuery().setCoalesceInFlight(true);
+
+        QueryResponse response = query(service(), "u-1", 100).block();
+
+        assertThat(response.isOk()).isFalse();
+        assertThat(response.getError().getCode()).isEqualTo("Timeout");
+        assertThat(response.getCosmos().getStatusCode()).isEqualTo(408);
+    }
+
+    @Test
+    void sharedUpstreamCallIsCancelledWhenTheOnlyCallersDeadlinePasses() {
+        properties.getQuery().setCoalesceInFlight(true);
+
+        query(service(), "u-1", 100).block();
+
+        assertThat(cancelledQueries).hasValue(1);
+    }
+
+    @Test
+    void callerDeadlineAppliesWithoutCoalescing() {
+        properties.getQuery().setCoalesceInFlight(false);
+
+        QueryResponse response = query(service(), "u-1", 100).block();
+
+        assertThat(response.getCosmos().getStatusCode()).isEqualTo(408);
+        assertThat(cancelledQueries).hasValue(1);
+    }
+
+    @Test
+    void batchDeadlineCoversTheWholeBatch() {
+        // One query at a time: the first fits in the deadline, the second runs out of it, the third never starts
+        properties.getInMemory().setLatency(Duration.ofMillis(600));
+        properties.getBatch().setMaxParallelism(1);
+        CosmosQueryService service = service();
+        List<BatchQueryItem> items = List.of(item("u-1"), item("u-2"), item("u-3"));
+
+        long start = System.nanoTime();
+        BatchQueryResponse response = service.executeBatch(items, 1000, null, CosmosTarget.DEFAULT).block();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(response.getResults()).extracting(result -> result.getCosmos().getStatusCode())
+                .containsExactly(200, 408, 408);
+        assertThat(elapsed).isLessThan(Duration.ofMillis(1500));
+    }
+
+    private CosmosQueryService service() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Counts upstream queries that were cancelled rather than answered
+        InMemoryCosmosQueryBackend backend = new InMemoryCosmosQueryBackend(properties, objectMapper,
+                new DefaultResourceLoader()) {
+            @Override
+            public <T> Mono<QueryPage<T>> queryPage(String containerName, SqlQuerySpec querySpec,
+                                                   BackendQueryOptions options, Class<T> itemType) {
+                return super.queryPage(containerName, querySpec, options, itemType)
+                        .doOnCancel(cancelledQueries::incrementAndGet);
+            }
+        };
+        for (String userId : List.of("u-1", "u-2", "u-3")) {
+            backend.upsertItem("orders", objectMapper.createObjectNode()
+                    .put("id", "o-" + userId)
+                    .put("userId", userId));
+        }
+        return new CosmosQueryService(backend, properties,
+                new QueryResultCache(properties, meterRegistry),
+                new InFlightQueryCoalescer(properties, meterRegistry),
+                new QueryShapeCache(properties),
+                new QueryMetrics(meterRegistry),
+                new SlowQueryLog(properties, meterRegistry),
+                new RuRateLimiter(properties, meterRegistry),
+                new UpstreamRetry(properties, meterRegistry),
+                new LocalChangeFeedStore(backend, properties, objectMapper, meterRegistry));
+    }
+
+    private static Mono<QueryResponse> query(CosmosQueryService service, String userId, int timeoutMs) {
+        return service.executeQuery("orders", request(userId), userId, null, null, null, QueryTuning.DEFAULT,
+                timeoutMs, null, CosmosTarget.DEFAULT);
+    }
+
+    private static QueryRequest request(String userId) {
+        return new QueryRequest("SELECT * FROM c WHERE c.userId = @userId", Map.of("userId", userId));
+    }
+
+    private static BatchQueryItem item(String userId) {
+        return BatchQueryItem.builder()
+                .container("orders")
+                .sql("SELECT * FROM c WHERE c.userId = @userId")
+                .params(Map.of("userId", userId))
+                .pk(userId)
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.ureca.cosmosdb.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FieldProjectionTest {
+
+    private static final String DOCUMENT = "{\"id\":\"o-1\",\"name\":\"Kim\",\"_rid\":\"r1\",\"_etag\":\"e1\",\"_ts\":1700000000,"
+            + "\"address\":{\"city\":\"Seoul\",\"zip\":\"04524\",\"geo\":{\"lat\":37.5,\"lon\":127.0}},"
+            + "\"lines\":[{\"sku\":\"A\",\"qty\":1},{\"sku\":\"B\",\"qty\":2}]}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void includesOnlyTheListedFields() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(List.of("id", "address.city"), null, false));
+
+        assertThat(result).isEqualTo(json("{\"id\":\"o-1\",\"address\":{\"city\":\"Seoul\"}}"));
+    }
+
+    @Test
+    void includedPathsReachIntoArraysOfObjects() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(List.of("lines.sku"), null, false));
+
+        assertThat(result).isEqualTo(json("{\"lines\":[{\"sku\":\"A\"},{\"sku\":\"B\"}]}"));
+    }
+
+    @Test
+    void includedParentCoversItsWholeValue() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(List.of("address", "address.city"), null, false));
+
+        assertThat(result.get("address")).isEqualTo(json(DOCUMENT).get("address"));
+    }
+
+    @Test
+    void keepsDocumentsWithNoneOfTheFields() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(List.of("missing"), null, false));
+
+        assertThat(result).isEqualTo(json("{}"));
+    }
+
+    @Test
+    void excludesTheListedFields() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(null, List.of("lines", "address.geo"), false));
+
+        assertThat(result.has("lines")).isFalse();
+        assertThat(result.get("address")).isEqualTo(json("{\"city\":\"Seoul\",\"zip\":\"04524\"}"));
+        assertThat(result.get("_rid").asText()).isEqualTo("r1");
+    }
+
+    @Test
+    void excludedPathsReachIntoArraysOfObjects() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(null, List.of("lines.qty"), false));
+
+        assertThat(result.get("lines")).isEqualTo(json("[{\"sku\":\"A\"},{\"sku\":\"B\"}]"));
+    }
+
+    @Test
+    void stripsTopLevelSystemProperties() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(null, null, true));
+
+        assertThat(result.has("_rid")).isFalse();
+        assertThat(result.has("_etag")).isFalse();
+        assertThat(result.has("_ts")).isFalse();
+        assertThat(result.get("id").asText()).isEqualTo("o-1");
+        assertThat(result.get("address")).isEqualTo(json(DOCUMENT).get("address"));
+    }
+
+    @Test
+    void stripsSystemPropertiesAlongsideExcludedFields() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(null, List.of("lines"), true));
+
+        assertThat(result.has("lines")).isFalse();
+        assertThat(result.has("_rid")).isFalse();
+        assertThat(result.get("name").asText()).isEqualTo("Kim");
+    }
+
+    @Test
+    void listedSystemPropertiesAreIncludedEvenWhenStripping() throws JsonProcessingException {
+        JsonNode result = project(FieldProjection.of(List.of("id", "_etag"), null, true));
+
+        assertThat(result).isEqualTo(json("{\"id\":\"o-1\",\"_etag\":\"e1\"}"));
+    }
+
+    @Test
+    void returnsNullWhenWholeDocumentsAreReturned() {
+        assertThat(FieldProjection.of(null, null, false)).isNull();
+        assertThat(FieldProjection.of(List.of(), List.of(), false)).isNull();
+    }
+
+    @Test
+    void rejectsFieldsCombinedWithExcludeFields() {
+        assertThatThrownBy(() -> FieldProjection.of(List.of("id"), List.of("name"), false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsEmptyPaths() {
+        assertThatThrownBy(() -> FieldProjection.of(List.of(" "), null, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FieldProjection.of(null, List.of("address..city"), false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FieldProjection.of(List.of("address."), null, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void serializesEveryResultAndNulls() throws JsonProcessingException {
+        FieldProjection projection = FieldProjection.of(List.of("id"), null, false);
+        List<Object> results = new ArrayList<>();
+        results.add(objectMapper.readValue(DOCUMENT, Map.class));
+        results.add(null);
+        results.add(json("{\"id\":\"o-2\",\"name\":\"Lee\"}"));
+
+        String serialized = objectMapper.writeValueAsString(Map.of("results", projection.apply(results)));
+
+        assertThat(json(serialized).get("results")).isEqualTo(json("[{\"id\":\"o-1\"},null,{\"id\":\"o-2\"}]"));
+    }
+
+    /**
+     * Serializes the document through {@code projection} as a query response would, and reads it back.
+     */
+    private JsonNode project(FieldProjection projection) throws JsonProcessingException {
+        List<?> results = projection.apply(List.of(objectMapper.readValue(DOCUMENT, Map.class)));
+        String serialized = objectMapper.writeValueAsString(Map.of("results", results));
+        return objectMapper.readTree(serialized).get("results").get(0);
+    }
+
+    private JsonNode json(String json) throws JsonProcessingException {
+        return objectMapper.readTree(json);
+    }
+}
@@ -0,0 +1,104 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgingPolicyTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(1);
+    // The budget starts full; with no deposits it allows this many hedge-enabled calls at once
+    private static final int BUDGET = 10;
+
+    private CosmosDbProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CosmosDbProperties();
+        properties.getHedging().setEnabled(true);
+        properties.getHedging().setThreshold(Duration.ofMillis(100));
+        properties.getHedging().setBudgetRatio(0.0);
+        properties.getConnection().setPreferredRegions(List.of("Korea Central", "Korea South"));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void callThatIsNeverSubscribedHoldsNoHedge() {
+        HedgingPolicy policy = new HedgingPolicy(properties, meterRegistry);
+        for (int i = 0; i < BUDGET * 2; i++) {
+            policy.hedged(TIMEOUT, hedge -> Mono.just(hedge != null));
+        }
+
+        assertThat(policy.hedged(TIMEOUT, hedge -> Mono.just(hedge != null)).block()).isTrue();
+        assertThat(budgetExhausted()).isZero();
+    }
+
+    @Test
+    void completedCallsWithoutAHedgeSentReturnTheirReservation() {
+        HedgingPolicy policy = new HedgingPolicy(properties, meterRegistry);
+
+        for (int i = 0; i < BUDGET * 2; i++) {
+            assertThat(policy.hedgedPages(TIMEOUT, hedge -> Flux.just(hedge != null)).blockLast()).isTrue();
+        }
+        assertThat(budgetExhausted()).isZero();
+    }
+
+    @Test
+    void callsInFlightUseTheBudgetUntilTheyEnd() {
+        HedgingPolicy policy = new HedgingPolicy(properties, meterRegistry);
+        List<Disposable> inFlight = new ArrayList<>();
+        for (int i = 0; i < BUDGET; i++) {
+            inFlight.add(policy.hedged(TIMEOUT, hedge -> Mono.never()).subscribe());
+        }
+
+        assertThat(policy.hedged(TIMEOUT, hedge -> Mono.just(hedge != null)).block()).isFalse();
+        assertThat(budgetExhausted()).isEqualTo(1.0);
+
+        inFlight.forEach(Disposable::dispose);
+        assertThat(policy.hedged(TIMEOUT, hedge -> Mono.just(hedge != null)).block()).isTrue();
+    }
+
+    @Test
+    void everySubscriptionIsAdmittedAfresh() {
+        HedgingPolicy policy = new HedgingPolicy(properties, meterRegistry);
+        List<Boolean> admitted = new ArrayList<>();
+
+        policy.hedged(TIMEOUT, hedge -> Mono.fromRunnable(() -> admitted.add(hedge != null)).then())
+                .repeat(BUDGET * 2)
+                .blockLast();
+
+        assertThat(admitted).hasSize(BUDGET * 2 + 1).containsOnly(true);
+    }
+
+    @Test
+    void callsWithADeadlineWithinTheThresholdAreNotHedged() {
+        HedgingPolicy policy = new HedgingPolicy(properties, meterRegistry);
+
+        assertThat(policy.hedged(Duration.ofMillis(50), hedge -> Mono.just(hedge != null)).block()).isFalse();
+        assertThat(policy.hedged(null, hedge -> Mono.just(hedge != null)).block()).isFalse();
+    }
+
+    @Test
+    void staysOffWithASinglePreferredRegion() {
+        properties.getConnection().setPreferredRegions(List.of("Korea Central"));
+        HedgingPolicy policy = new HedgingPolicy(properties, meterRegistry);
+
+        assertThat(policy.hedged(TIMEOUT, hedge -> Mono.just(hedge != null)).block()).isFalse();
+    }
+
+    private double budgetExhausted() {
+        return meterRegistry.counter("sidecar.hedge.budget.exhausted").count();
+    }
+}
@@ -0,0 +1,144 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.CosmosMetadata;
+import com.ureca.cosmosdb.model.QueryRequest;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InFlightQueryCoalescerTest {
+
+    private static final QueryKey KEY = QueryKey.of("orders",
+            new QueryRequest("SELECT * FROM c WHERE c.userId = @userId", Map.of("userId", "u-1")),
+            "u-1", null, null, false);
+
+    private MeterRegistry meterRegistry;
+    private InFlightQueryCoalescer coalescer;
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new InFlightQueryCoalescer(new CosmosDbProperties(), meterRegistry);
+    }
+
+    @Test
+    void concurrentIdenticalQueriesShareOneUpstreamCall() {
+        Sinks.One<QueryResponse> upstream = Sinks.one();
+        AtomicReference<QueryResponse> first = new AtomicReference<>();
+        AtomicReference<QueryResponse> second = new AtomicReference<>();
+
+        coalescer.execute(KEY, counted(upstream.asMono())).subscribe(first::set);
+        coalescer.execute(KEY, counted(Mono.just(response(2.0)))).subscribe(second::set);
+        upstream.tryEmitValue(response(1.0));
+
+        assertThat(subscriptions).hasValue(1);
+        assertThat(first.get()).isSameAs(second.get());
+        assertThat(meterRegistry.counter("sidecar.inflight.requests").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("sidecar.inflight.collapsed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void completedCallIsNotReused() {
+        coalescer.execute(KEY, counted(Mono.just(response(1.0)))).block();
+        QueryResponse next = coalescer.execute(KEY, counted(Mono.just(response(2.0)))).block();
+
+        assertThat(subscriptions).hasValue(2);
+        assertThat(next.getCosmos().getRu()).isEqualTo(2.0);
+    }
+
+    @Test
+    void entryIsRemovedWhenTheCallFails() {
+        coalescer.execute(KEY, counted(Mono.error(new IllegalStateException("boom"))))
+                .onErrorResume(e -> Mono.empty())
+                .block();
+        QueryResponse next = coalescer.execute(KEY, counted(Mono.just(response(3.0)))).block();
+
+        assertThat(subscriptions).hasValue(2);
+        assertThat(next.getCosmos().getRu()).isEqualTo(3.0);
+    }
+
+    @Test
+    void cancelledCallerDoesNotCancelTheSharedCall() {
+        Sinks.One<QueryResponse> upstream = Sinks.one();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<QueryResponse> second = new AtomicReference<>();
+
+        Disposable first = coalescer.execute(KEY, counted(upstream.asMono().doOnCancel(() -> cancelled.set(true))))
+                .subscribe();
+        coalescer.execute(KEY, counted(Mono.just(response(2.0)))).subscribe(second::set);
+        first.dispose();
+        upstream.tryEmitValue(response(1.0));
+
+        assertThat(cancelled).isFalse();
+        assertThat(subscriptions).hasValue(1);
+        assertThat(second.get().getCosmos().getRu()).isEqualTo(1.0);
+    }
+
+    @Test
+    void upstreamIsCancelledWhenTheLastCallerLeaves() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        Mono<QueryResponse> upstream = Mono.<QueryResponse>never().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = coalescer.execute(KEY, counted(upstream)).subscribe();
+        Disposable second = coalescer.execute(KEY, counted(Mono.just(response(2.0)))).subscribe();
+        first.dispose();
+        assertThat(cancelled).isFalse();
+        second.dispose();
+
+        assertThat(cancelled).isTrue();
+        assertThat(meterRegistry.get("sidecar.inflight.active").gauge().value()).isZero();
+    }
+
+    @Test
+    void upstreamIsCancelledWhenTheOnlyCallersDeadlinePasses() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        QueryResponse response = coalescer.execute(KEY, counted(Mono.<QueryResponse>never()
+                        .doOnCancel(() -> cancelled.set(true))))
+                .timeout(Duration.ofMillis(50), Mono.just(response(0.0)))
+                .block();
+
+        assertThat(response.getCosmos().getRu()).isZero();
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void callerArrivingAfterCancellationStartsANewCall() {
+        coalescer.execute(KEY, counted(Mono.never())).subscribe().dispose();
+
+        QueryResponse next = coalescer.execute(KEY, counted(Mono.just(response(3.0)))).block();
+
+        assertThat(subscriptions).hasValue(2);
+        assertThat(next.getCosmos().getRu()).isEqualTo(3.0);
+    }
+
+    private Mono<QueryResponse> counted(Mono<QueryResponse> upstream) {
+        return Mono.defer(() -> {
+            subscriptions.incrementAndGet();
+            return upstream;
+        });
+    }
+
+    private static QueryResponse response(double ru) {
+        return QueryResponse.builder()
+                .ok(true)
+                .cosmos(CosmosMetadata.builder().ru(ru).statusCode(200).build())
+                .build();
+    }
+}
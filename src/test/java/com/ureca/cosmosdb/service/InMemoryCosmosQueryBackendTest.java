@@ -0,0 +1,194 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryCosmosQueryBackendTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CosmosDbProperties properties;
+    private InMemoryCosmosQueryBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CosmosDbProperties();
+        properties.getInMemory().setPartitionKeyPath("/userId");
+        backend = new InMemoryCosmosQueryBackend(properties, objectMapper, new DefaultResourceLoader());
+
+        for (int i = 1; i <= 5; i++) {
+            backend.upsertItem("orders", document("o-" + i, i <= 3 ? "u-1" : "u-2", i % 2 == 0 ? "open" : "closed"));
+        }
+    }
+
+    @Test
+    void pagesThroughResultsWithContinuationTokens() {
+        BackendQueryOptions options = BackendQueryOptions.builder().maxItemCount(2).build();
+
+        List<QueryPage<JsonNode>> pages = backend.queryPages("orders", new SqlQuerySpec("SELECT * FROM c"), options,
+                JsonNode.class).collectList().block();
+
+        assertThat(pages).hasSize(3);
+        assertThat(pages).extracting(page -> page.getResults().size()).containsExactly(2, 2, 1);
+        assertThat(pages).extracting(QueryPage::getContinuationToken).containsExactly("mem:2", "mem:4", null);
+        assertThat(pages).allSatisfy(page -> assertThat(page.getRequestCharge()).isGreaterThan(0.0));
+    }
+
+    @Test
+    void resumesFromContinuationToken() {
+        BackendQueryOptions options = BackendQueryOptions.builder().maxItemCount(2).continuationToken("mem:4").build();
+
+        QueryPage<JsonNode> page = backend.queryPage("orders", new SqlQuerySpec("SELECT * FROM c"), options,
+                JsonNode.class).block();
+
+        assertThat(page.getResults()).extracting(node -> node.get("id").asText()).containsExactly("o-5");
+        assertThat(page.getContinuationToken()).isNull();
+    }
+
+    @Test
+    void filtersByPartitionKeyAndParameters() {
+        BackendQueryOptions options = BackendQueryOptions.builder().partitionKey("u-1").build();
+        SqlQuerySpec querySpec = new SqlQuerySpec("SELECT * FROM c WHERE c.status = @status",
+                new SqlParameter("@status", "open"));
+
+        QueryPage<JsonNode> page = backend.queryPage("orders", querySpec, options, JsonNode.class).block();
+
+        assertThat(page.getResults()).extracting(node -> node.get("id").asText()).containsExactly("o-2");
+    }
+
+    @Test
+    void returnsMapsUnlessJsonNodesAreRequested() {
+        BackendQueryOptions options = BackendQueryOptions.builder().partitionKey("u-2").build();
+
+        QueryPage<Object> page = backend.queryPage("orders", new SqlQuerySpec("SELECT * FROM c"), options,
+                Object.class).block();
+
+        assertThat(page.getResults()).hasSize(2).allSatisfy(item -> assertThat(item).isInstanceOf(Map.class));
+    }
+
+    @Test
+    void rejectsUnsupportedQueriesWithBadRequest() {
+        StepVerifier.create(backend.queryPage("orders", new SqlQuerySpec("SELECT c.id FROM c"),
+                        BackendQueryOptions.builder().build(), JsonNode.class))
+                .expectErrorSatisfies(e -> assertThat(((CosmosBackendException) e).getStatusCode()).isEqualTo(400))
+                .verify();
+    }
+
+    @Test
+    void rejectsForeignContinuationTokens() {
+        BackendQueryOptions options = BackendQueryOptions.builder().continuationToken("{\"token\":\"x\"}").build();
+
+        StepVerifier.create(backend.queryPage("orders", new SqlQuerySpec("SELECT * FROM c"), options, JsonNode.class))
+                .expectErrorSatisfies(e -> assertThat(((CosmosBackendException) e).getStatusCode()).isEqualTo(400))
+                .verify();
+    }
+
+    @Test
+    void rejectsNegativeContinuationOffsets() {
+        BackendQueryOptions options = BackendQueryOptions.builder().continuationToken("mem:-5").build();
+
+        StepVerifier.create(backend.queryPage("orders", new SqlQuerySpec("SELECT * FROM c"), options, JsonNode.class))
+                .expectErrorSatisfies(e -> assertThat(((CosmosBackendException) e).getStatusCode()).isEqualTo(400))
+                .verify();
+    }
+
+    @Test
+    void readsItemByIdAndPartitionKey() {
+        BackendQueryOptions options = BackendQueryOptions.builder().partitionKey("u-2").build();
+
+        QueryPage<JsonNode> page = backend.readItem("orders", "o-4", options, JsonNode.class).block();
+
+        assertThat(page.getResults()).extracting(node -> node.get("id").asText()).containsExactly("o-4");
+        assertThat(page.getRequestCharge()).isGreaterThanOrEqualTo(1.0);
+    }
+
+    @Test
+    void readOfMissingItemIsNotFound() {
+        BackendQueryOptions options = BackendQueryOptions.builder().partitionKey("u-1").build();
+
+        StepVerifier.create(backend.readItem("orders", "o-4", options, JsonNode.class))
+                .expectErrorSatisfies(e -> {
+                    CosmosBackendException cosmos = (CosmosBackendException) e;
+                    assertThat(cosmos.getStatusCode()).isEqualTo(404);
+                    assertThat(cosmos.getSubStatusCode()).isZero();
+                })
+                .verify();
+    }
+
+    @Test
+    void missingContainerIsNotFoundWithSubStatus1003() {
+        StepVerifier.create(backend.queryPage("missing", new SqlQuerySpec("SELECT * FROM c"),
+                        BackendQueryOptions.builder().build(), JsonNode.class))
+                .expectErrorSatisfies(e -> {
+                    CosmosBackendException cosmos = (CosmosBackendException) e;
+                    assertThat(cosmos.getStatusCode()).isEqualTo(404);
+                    assertThat(cosmos.getSubStatusCode()).isEqualTo(1003);
+                })
+                .verify();
+    }
+
+    @Test
+    void readManyReturnsExistingItemsOnly() {
+        List<ItemIdentity> items = List.of(
+                new ItemIdentity("o-1", "u-1"),
+                new ItemIdentity("o-2", "u-1"),
+                new ItemIdentity("o-4", "u-2"),
+                new ItemIdentity("o-9", "u-2"));
+
+        QueryPage<JsonNode> page = backend.readMany("orders", items, BackendQueryOptions.builder().build(),
+                JsonNode.class).block();
+
+        assertThat(page.getResults()).extracting(node -> node.get("id").asText())
+                .containsExactlyInAnyOrder("o-1", "o-2", "o-4");
+        assertThat(page.getRequestCharge()).isGreaterThan(0.0);
+    }
+
+    @Test
+    void injectsThrottlingWithRetryAfter() {
+        properties.getInMemory().setThrottleRate(1.0);
+        properties.getInMemory().setThrottleRetryAfter(Duration.ofMillis(250));
+
+        StepVerifier.create(backend.readItem("orders", "o-1", BackendQueryOptions.builder().partitionKey("u-1").build(),
+                        JsonNode.class))
+                .expectErrorSatisfies(e -> {
+                    CosmosBackendException cosmos = (CosmosBackendException) e;
+                    assertThat(cosmos.getStatusCode()).isEqualTo(429);
+                    assertThat(cosmos.getRetryAfterDuration()).isEqualTo(Duration.ofMillis(250));
+                })
+                .verify();
+    }
+
+    @Test
+    void changeFeedReturnsWritesInOrderAndResumes() {
+        List<QueryPage<JsonNode>> initial = backend.readChangeFeed("orders", null, 10).collectList().block();
+        assertThat(initial).hasSize(1);
+        assertThat(initial.get(0).getResults()).extracting(node -> node.get("id").asText())
+                .containsExactly("o-1", "o-2", "o-3", "o-4", "o-5");
+
+        backend.upsertItem("orders", document("o-2", "u-1", "closed"));
+        List<QueryPage<JsonNode>> changes = backend.readChangeFeed("orders", initial.get(0).getContinuationToken(), 10)
+                .collectList().block();
+
+        assertThat(changes.get(0).getResults()).extracting(node -> node.get("status").asText()).containsExactly("closed");
+    }
+
+    private ObjectNode document(String id, String userId, String status) {
+        return objectMapper.createObjectNode()
+                .put("id", id)
+                .put("userId", userId)
+                .put("status", status);
+    }
+}
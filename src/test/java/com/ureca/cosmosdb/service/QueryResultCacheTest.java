@@ -0,0 +1,86 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.CosmosMetadata;
+import com.ureca.cosmosdb.model.QueryRequest;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryResultCacheTest {
+
+    private static final CosmosTarget OTHER_ACCOUNT = CosmosTarget.of("reporting", "analytics");
+
+    private CosmosDbProperties properties;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        properties = new CosmosDbProperties();
+        properties.getCache().setEnabled(true);
+        properties.getCache().setDefaultTtl(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void servesRepeatedQueriesFromTheCache() {
+        QueryResultCache cache = new QueryResultCache(properties, new SimpleMeterRegistry());
+
+        cache.get(key(CosmosTarget.DEFAULT), loader()).block();
+        QueryResponse response = cache.get(key(CosmosTarget.DEFAULT), loader()).block();
+
+        assertThat(loads).hasValue(1);
+        assertThat(response.getCosmos().getCacheHit()).isTrue();
+    }
+
+    @Test
+    void containerTtlAppliesToTheContainerOfEveryTarget() {
+        properties.getCache().setContainerTtl(Map.of("orders", Duration.ZERO));
+        QueryResultCache cache = new QueryResultCache(properties, new SimpleMeterRegistry());
+
+        cache.get(key(OTHER_ACCOUNT), loader()).block();
+        cache.get(key(OTHER_ACCOUNT), loader()).block();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void qualifiedNamesKeepTargetsApart() {
+        QueryResultCache cache = new QueryResultCache(properties, new SimpleMeterRegistry());
+
+        cache.get(key(CosmosTarget.DEFAULT), loader()).block();
+        cache.get(key(OTHER_ACCOUNT), loader()).block();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void containerNameStripsTheQualifier() {
+        assertThat(CosmosTarget.containerName(OTHER_ACCOUNT.qualify("orders"))).isEqualTo("orders");
+        assertThat(CosmosTarget.containerName(CosmosTarget.of(null, "analytics").qualify("orders"))).isEqualTo("orders");
+        assertThat(CosmosTarget.containerName(CosmosTarget.DEFAULT.qualify("orders"))).isEqualTo("orders");
+    }
+
+    private static QueryKey key(CosmosTarget target) {
+        return QueryKey.of(target.qualify("orders"),
+                new QueryRequest("SELECT * FROM c WHERE c.userId = @userId", Map.of("userId", "u-1")),
+                "u-1", null, null, false);
+    }
+
+    private Mono<QueryResponse> loader() {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return QueryResponse.builder()
+                    .ok(true)
+                    .cosmos(CosmosMetadata.builder().ru(2.0).statusCode(200).build())
+                    .build();
+        });
+    }
+}
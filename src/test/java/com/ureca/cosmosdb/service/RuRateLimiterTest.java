@@ -0,0 +1,180 @@
+package com.ureca.cosmosdb.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuRateLimiterTest {
+
+    private static final String CONTAINER = "orders";
+    private static final String SHAPE = "SELECT * FROM c WHERE c.userId = @userId";
+
+    private CosmosDbProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        // 100 RU of burst and a fixed 50 RU estimate: two requests drain the bucket
+        properties = new CosmosDbProperties();
+        CosmosDbProperties.RateLimit rateLimit = properties.getRateLimit();
+        rateLimit.setEnabled(true);
+        rateLimit.setDefaultRuPerSecond(100.0);
+        rateLimit.setBurst(Duration.ofSeconds(1));
+        rateLimit.setMaxQueueWait(Duration.ofMillis(100));
+        rateLimit.setInitialCostEstimate(50.0);
+        rateLimit.setCostSmoothing(0.0);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shedsWhenTheBudgetIsExhausted() {
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        admit(limiter, Mono.just(page(50.0))).block();
+        admit(limiter, Mono.just(page(50.0))).block();
+
+        StepVerifier.create(admit(limiter, Mono.just(page(50.0))))
+                .expectErrorSatisfies(e -> {
+                    CosmosBackendException cosmos = (CosmosBackendException) e;
+                    assertThat(cosmos.getStatusCode()).isEqualTo(429);
+                    assertThat(cosmos.getSubStatusCode()).isEqualTo(RuRateLimiter.SUB_STATUS_BUDGET_EXHAUSTED);
+                })
+                .verify();
+        assertThat(requests("admitted")).isEqualTo(2.0);
+        assertThat(requests("shed")).isEqualTo(1.0);
+    }
+
+    @Test
+    void containerRateAppliesToTheContainerOfEveryTarget() {
+        properties.getRateLimit().setContainerRuPerSecond(Map.of(CONTAINER, 50.0));
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        String scope = CosmosTarget.of("reporting", "analytics").qualify(CONTAINER);
+        limiter.admit(scope, SHAPE, null, Mono.just(page(50.0))).block();
+
+        StepVerifier.create(limiter.admit(scope, SHAPE, null, Mono.just(page(50.0))))
+                .expectErrorSatisfies(e -> assertThat(((CosmosBackendException) e).getStatusCode()).isEqualTo(429))
+                .verify();
+    }
+
+    @Test
+    void queuesWhenTheBudgetRefillsWithinTheWait() {
+        properties.getRateLimit().setMaxQueueWait(Duration.ofSeconds(1));
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        admit(limiter, Mono.just(page(50.0))).block();
+        admit(limiter, Mono.just(page(50.0))).block();
+
+        QueryPage<JsonNode> page = admit(limiter, Mono.just(page(50.0))).block();
+
+        assertThat(page).isNotNull();
+        assertThat(requests("queued")).isEqualTo(1.0);
+        assertThat(requests("shed")).isZero();
+    }
+
+    @Test
+    void settlementRefundsAnOverestimate() {
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            admit(limiter, Mono.just(page(1.0))).block();
+        }
+
+        assertThat(requests("admitted")).isEqualTo(5.0);
+        assertThat(requests("shed")).isZero();
+    }
+
+    @Test
+    void cancelledRequestIsRefunded() {
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        admit(limiter, Mono.never()).subscribe().dispose();
+        admit(limiter, Mono.never()).subscribe().dispose();
+
+        admit(limiter, Mono.just(page(50.0))).block();
+        admit(limiter, Mono.just(page(50.0))).block();
+
+        assertThat(requests("admitted")).isEqualTo(4.0);
+        assertThat(requests("shed")).isZero();
+    }
+
+    @Test
+    void requestFailingWithoutACosmosAnswerIsRefunded() {
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(admit(limiter, Mono.error(new TimeoutException())))
+                    .expectError(TimeoutException.class)
+                    .verify();
+        }
+
+        admit(limiter, Mono.just(page(50.0))).block();
+        admit(limiter, Mono.just(page(50.0))).block();
+
+        assertThat(requests("shed")).isZero();
+    }
+
+    @Test
+    void requestCancelledWhileQueuedIsRefunded() {
+        // A second queued reservation would need a 1s wait; after the refund it needs 0.5s
+        properties.getRateLimit().setMaxQueueWait(Duration.ofMillis(600));
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        admit(limiter, Mono.just(page(50.0))).block();
+        admit(limiter, Mono.just(page(50.0))).block();
+        admit(limiter, Mono.just(page(50.0))).subscribe().dispose();
+
+        admit(limiter, Mono.just(page(50.0))).block();
+
+        assertThat(requests("queued")).isEqualTo(2.0);
+        assertThat(requests("shed")).isZero();
+    }
+
+    @Test
+    void streamedQueryIsChargedForEveryPage() {
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        limiter.admitPages(CONTAINER, SHAPE, null, Flux.just(page(50.0), page(50.0))).blockLast();
+
+        StepVerifier.create(admit(limiter, Mono.just(page(50.0))))
+                .expectError(CosmosBackendException.class)
+                .verify();
+    }
+
+    @Test
+    void countersAreRegisteredOncePerContainerAndResult() {
+        RuRateLimiter limiter = new RuRateLimiter(properties, meterRegistry);
+        admit(limiter, Mono.just(page(1.0))).block();
+        admit(limiter, Mono.just(page(1.0))).block();
+
+        assertThat(meterRegistry.find("sidecar.ratelimit.requests").counters()).hasSize(3);
+        assertThat(requests("admitted")).isEqualTo(2.0);
+    }
+
+    private static Mono<QueryPage<JsonNode>> admit(RuRateLimiter limiter, Mono<QueryPage<JsonNode>> upstream) {
+        return limiter.admit(CONTAINER, SHAPE, null, upstream);
+    }
+
+    private double requests(String result) {
+        Counter counter = meterRegistry.find("sidecar.ratelimit.requests")
+                .tag("container", CONTAINER)
+                .tag("result", result)
+                .counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+
+    private static QueryPage<JsonNode> page(double requestCharge) {
+        return QueryPage.<JsonNode>builder()
+                .results(List.of())
+                .requestCharge(requestCharge)
+                .activityId("test")
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.ureca.cosmosdb.service;
+
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimpleQueryFilterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void selectWithoutWhereMatchesEverything() throws JsonProcessingException {
+        Predicate<JsonNode> filter = parse(new SqlQuerySpec("select * from c"));
+
+        assertThat(filter.test(json("{}"))).isTrue();
+        assertThat(filter.test(json("{\"id\":\"o-1\"}"))).isTrue();
+    }
+
+    @Test
+    void matchesParametersAndLiterals() throws JsonProcessingException {
+        Predicate<JsonNode> filter = parse(new SqlQuerySpec(
+                "SELECT * FROM c WHERE c.userId = @userId AND c.status = 'open' AND c.qty = 2 AND c.paid = true",
+                new SqlParameter("@userId", "u-1")));
+
+        assertThat(filter.test(json("{\"userId\":\"u-1\",\"status\":\"open\",\"qty\":2,\"paid\":true}"))).isTrue();
+        assertThat(filter.test(json("{\"userId\":\"u-2\",\"status\":\"open\",\"qty\":2,\"paid\":true}"))).isFalse();
+        assertThat(filter.test(json("{\"userId\":\"u-1\",\"status\":\"closed\",\"qty\":2,\"paid\":true}"))).isFalse();
+        assertThat(filter.test(json("{\"userId\":\"u-1\",\"status\":\"open\",\"qty\":2,\"paid\":false}"))).isFalse();
+    }
+
+    @Test
+    void comparesNumbersByValue() throws JsonProcessingException {
+        Predicate<JsonNode> filter = parse(new SqlQuerySpec("SELECT * FROM c WHERE c.price = @price",
+                new SqlParameter("@price", 10)));
+
+        assertThat(filter.test(json("{\"price\":10.0}"))).isTrue();
+        assertThat(filter.test(json("{\"price\":10}"))).isTrue();
+        assertThat(filter.test(json("{\"price\":\"10\"}"))).isFalse();
+    }
+
+    @Test
+    void followsNestedPaths() throws JsonProcessingException {
+        Predicate<JsonNode> filter = parse(new SqlQuerySpec("SELECT * FROM o WHERE (o.address.city = \"Seoul\")"));
+
+        assertThat(filter.test(json("{\"address\":{\"city\":\"Seoul\"}}"))).isTrue();
+        assertThat(filter.test(json("{\"address\":{\"city\":\"Busan\"}}"))).isFalse();
+        assertThat(filter.test(json("{\"city\":\"Seoul\"}"))).isFalse();
+    }
+
+    @Test
+    void nullMatchesExplicitNullOnly() throws JsonProcessingException {
+        Predicate<JsonNode> filter = parse(new SqlQuerySpec("SELECT * FROM c WHERE c.deletedAt = null"));
+
+        assertThat(filter.test(json("{\"deletedAt\":null}"))).isTrue();
+        assertThat(filter.test(json("{}"))).isFalse();
+    }
+
+    @Test
+    void rejectsUnsupportedQueries() {
+        assertThatThrownBy(() -> parse(new SqlQuerySpec("SELECT c.id FROM c")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse(new SqlQuerySpec("SELECT * FROM c WHERE c.qty > 2")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("c.qty > 2");
+        assertThatThrownBy(() -> parse(new SqlQuerySpec("SELECT * FROM c WHERE c.a = 1 OR c.b = 2")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsConditionsOnAnotherAlias() {
+        assertThatThrownBy(() -> parse(new SqlQuerySpec("SELECT * FROM c WHERE d.userId = 'u-1'")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsUndefinedParameters() {
+        assertThatThrownBy(() -> parse(new SqlQuerySpec("SELECT * FROM c WHERE c.userId = @userId")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("@userId");
+    }
+
+    private Predicate<JsonNode> parse(SqlQuerySpec querySpec) {
+        return SimpleQueryFilter.parse(querySpec, objectMapper);
+    }
+
+    private JsonNode json(String json) throws JsonProcessingException {
+        return objectMapper.readTree(json);
+    }
+}
@@ -0,0 +1,153 @@
+package com.ureca.cosmosdb.service;
+
+import com.ureca.cosmosdb.config.CosmosDbProperties;
+import com.ureca.cosmosdb.model.CosmosMetadata;
+import com.ureca.cosmosdb.model.QueryResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamRetryTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private CosmosDbProperties properties;
+    private MeterRegistry meterRegistry;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        properties = new CosmosDbProperties();
+        properties.getRetry().setEnabled(true);
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(10));
+        properties.getRetry().setJitter(0.0);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void retriesRetryableStatusUntilSuccess() {
+        QueryResponse response = retry().execute(responses(failure(503, 0, null), success()), TIMEOUT).block();
+
+        assertThat(response.isOk()).isTrue();
+        assertThat(calls).hasValue(2);
+        assertThat(response.getCosmos().getAttempts()).isEqualTo(2);
+        assertThat(response.getCosmos().getTotalRu()).isEqualTo(3.0);
+        assertThat(response.getCosmos().getRu()).isEqualTo(2.0);
+        assertThat(meterRegistry.counter("sidecar.retry.attempts").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void retriesEachRetryableStatusCode() {
+        for (int statusCode : List.of(429, 408, 503, 410)) {
+            calls.set(0);
+            QueryResponse response = retry().execute(responses(failure(statusCode, 0, null), success()), TIMEOUT)
+                    .block();
+
+            assertThat(response.isOk()).as("status %d", statusCode).isTrue();
+            assertThat(calls).as("status %d", statusCode).hasValue(2);
+        }
+    }
+
+    @Test
+    void stopsAfterMaxAttempts() {
+        QueryResponse response = retry().execute(responses(failure(429, 3200, null)), TIMEOUT).block();
+
+        assertThat(response.isOk()).isFalse();
+        assertThat(calls).hasValue(3);
+        assertThat(response.getCosmos().getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotRetryNonRetryableStatus() {
+        QueryResponse response = retry().execute(responses(failure(404, 0, null), success()), TIMEOUT).block();
+
+        assertThat(response.getCosmos().getStatusCode()).isEqualTo(404);
+        assertThat(calls).hasValue(1);
+        assertThat(response.getCosmos().getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotRetryTheSidecarsOwnRuBudget429() {
+        QueryResponse response = retry().execute(
+                responses(failure(429, RuRateLimiter.SUB_STATUS_BUDGET_EXHAUSTED, null), success()), TIMEOUT).block();
+
+        assertThat(response.getCosmos().getSubStatus()).isEqualTo(RuRateLimiter.SUB_STATUS_BUDGET_EXHAUSTED);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void doesNotRetryPastTheDeadline() {
+        long start = System.nanoTime();
+        QueryResponse response = retry().execute(responses(failure(429, 3200, 500), success()),
+                Duration.ofMillis(200)).block();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(response.getCosmos().getStatusCode()).isEqualTo(429);
+        assertThat(calls).hasValue(1);
+        assertThat(elapsed).isLessThan(Duration.ofMillis(500));
+    }
+
+    @Test
+    void waitsForTheServersRetryAfter() {
+        long start = System.nanoTime();
+        QueryResponse response = retry().execute(responses(failure(429, 3200, 100), success()), TIMEOUT).block();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(response.isOk()).isTrue();
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void passesThroughWhenDisabled() {
+        properties.getRetry().setEnabled(false);
+
+        QueryResponse response = retry().execute(responses(failure(503, 0, null), success()), TIMEOUT).block();
+
+        assertThat(calls).hasValue(1);
+        assertThat(response.getCosmos().getAttempts()).isNull();
+    }
+
+    private UpstreamRetry retry() {
+        return new UpstreamRetry(properties, meterRegistry);
+    }
+
+    /**
+     * A call that answers with the given responses in turn, repeating the last one.
+     */
+    private Mono<QueryResponse> responses(QueryResponse... responses) {
+        Deque<QueryResponse> remaining = new ArrayDeque<>(List.of(responses));
+        return Mono.fromSupplier(() -> {
+            calls.incrementAndGet();
+            return remaining.size() > 1 ? remaining.poll() : remaining.peek();
+        });
+    }
+
+    private static QueryResponse success() {
+        return QueryResponse.builder()
+                .ok(true)
+                .cosmos(CosmosMetadata.builder().statusCode(200).ru(2.0).build())
+                .build();
+    }
+
+    private static QueryResponse failure(int statusCode, int subStatus, Integer retryAfterMs) {
+        return QueryResponse.builder()
+                .ok(false)
+                .cosmos(CosmosMetadata.builder()
+                        .statusCode(statusCode)
+                        .subStatus(subStatus)
+                        .retryAfterMs(retryAfterMs)
+                        .ru(1.0)
+                        .build())
+                .build();
+    }
+}